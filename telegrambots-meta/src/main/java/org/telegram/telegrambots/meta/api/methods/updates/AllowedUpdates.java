@@ -12,4 +12,9 @@ public final class AllowedUpdates {
     public static final String INLINEQUERY = "inline_query";
     public static final String CHOSENINLINERESULT = "chosen_inline_result";
     public static final String CALLBACKQUERY = "callback_query";
+    public static final String SHIPPINGQUERY = "shipping_query";
+    public static final String PRECHECKOUTQUERY = "pre_checkout_query";
+
+    private AllowedUpdates() {
+    }
 }
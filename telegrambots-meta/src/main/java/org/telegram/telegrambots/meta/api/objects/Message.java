@@ -1,5 +1,6 @@
 package org.telegram.telegrambots.meta.api.objects;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.telegram.telegrambots.meta.api.interfaces.BotApiObject;
 import org.telegram.telegrambots.meta.api.objects.games.Animation;
@@ -9,7 +10,11 @@ import org.telegram.telegrambots.meta.api.objects.payments.Invoice;
 import org.telegram.telegrambots.meta.api.objects.payments.SuccessfulPayment;
 import org.telegram.telegrambots.meta.api.objects.stickers.Sticker;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Ruben Bermudez
@@ -90,6 +95,8 @@ public class Message implements BotApiObject {
      */
     @JsonProperty(CAPTIONENTITIES_FIELD)
     private List<MessageEntity> captionEntities;
+    @JsonIgnore
+    private Map<String, List<MessageEntity>> entitiesByType; ///< Entities of the text indexed by type. Computed on first use
     @JsonProperty(AUDIO_FIELD)
     private Audio audio; ///< Optional. Message is an audio file, information about the file
     @JsonProperty(DOCUMENT_FIELD)
@@ -230,6 +237,42 @@ public class Message implements BotApiObject {
         return entities;
     }
 
+    /**
+     * Get the entities of the text of a given type, in the order they appear
+     * @param type Type of the entities (see {@link EntityType})
+     * @return Entities of that type, empty if there are none
+     */
+    public List<MessageEntity> getEntities(String type) {
+        return getEntitiesByType().getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * Check if the text contains an entity of a given type
+     * @param type Type of the entity (see {@link EntityType})
+     */
+    public boolean hasEntity(String type) {
+        return getEntitiesByType().containsKey(type);
+    }
+
+    private Map<String, List<MessageEntity>> getEntitiesByType() {
+        if (entitiesByType == null) {
+            if (entities == null || entities.isEmpty()) {
+                entitiesByType = Collections.emptyMap();
+            } else {
+                Map<String, List<MessageEntity>> index = new HashMap<>();
+                for (MessageEntity entity : entities) {
+                    if (entity != null) {
+                        entity.computeText(text);
+                        index.computeIfAbsent(entity.getType(), x -> new ArrayList<>(1)).add(entity);
+                    }
+                }
+                index.replaceAll((type, list) -> Collections.unmodifiableList(list));
+                entitiesByType = index;
+            }
+        }
+        return entitiesByType;
+    }
+
     public List<MessageEntity> getCaptionEntities() {
         if (captionEntities != null) {
             captionEntities.forEach(x -> x.computeText(caption));
@@ -362,10 +405,9 @@ public class Message implements BotApiObject {
     }
 
     public boolean isCommand() {
-        if (hasText() && entities != null) {
-            for (MessageEntity entity : entities) {
-                if (entity != null && entity.getOffset() == 0 &&
-                        EntityType.BOTCOMMAND.equals(entity.getType())) {
+        if (hasText()) {
+            for (MessageEntity entity : getEntities(EntityType.BOTCOMMAND)) {
+                if (entity.getOffset() == 0) {
                     return true;
                 }
             }
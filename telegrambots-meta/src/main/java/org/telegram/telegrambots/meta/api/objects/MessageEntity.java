@@ -77,7 +77,8 @@ public class MessageEntity implements BotApiObject {
     }
 
     protected void computeText(String message) {
-        if (message != null) {
+        // Entities never change their message, so the text is only cut once
+        if (message != null && text == null) {
             text = message.substring(offset, offset + length);
         }
     }
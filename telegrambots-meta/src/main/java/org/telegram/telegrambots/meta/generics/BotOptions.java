@@ -1,5 +1,7 @@
 package org.telegram.telegrambots.meta.generics;
 
+import java.util.List;
+
 /**
  * @author Ruben Bermudez
  * @version 1.0
@@ -7,4 +9,12 @@ package org.telegram.telegrambots.meta.generics;
  */
 public interface BotOptions {
     String getBaseUrl();
+
+    /**
+     * Types of updates handled by the bot, see {@link org.telegram.telegrambots.meta.api.methods.updates.AllowedUpdates}
+     * @return Update types to receive, or null to receive all of them
+     */
+    default List<String> getAllowedUpdates() {
+        return null;
+    }
 }
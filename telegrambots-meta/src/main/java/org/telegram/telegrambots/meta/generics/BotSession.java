@@ -9,6 +9,14 @@ public interface BotSession {
 
 	void setCallback(LongPollingBot callback);
 
+	/**
+	 * Sets the options of the bot. Sessions without options ignore them
+	 * 
+	 * @param options Options of the bot
+	 */
+	default void setOptions(BotOptions options) {
+	}
+
 	/**
 	 * Starts the bot
 	 */
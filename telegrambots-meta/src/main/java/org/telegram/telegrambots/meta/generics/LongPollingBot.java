@@ -29,6 +29,18 @@ public interface LongPollingBot {
 		updates.forEach(this::onUpdateReceived);
 	}
 
+	/**
+	 * This method is called with all the updates of an album (sharing the same
+	 * media_group_id) once the album is complete, if media group aggregation is
+	 * enabled in the bot options. If not reimplemented - it just sends them to
+	 * {@link #onUpdatesReceived(List)}
+	 * 
+	 * @param updates Updates of the album, in arrival order
+	 */
+	default void onMediaGroupReceived(List<Update> updates) {
+		onUpdatesReceived(updates);
+	}
+
 	/**
 	 * Return bot username of this bot
 	 */
@@ -39,6 +51,15 @@ public interface LongPollingBot {
 	 */
 	String getBotToken();
 
+	/**
+	 * Gets options of this bot
+	 * 
+	 * @return Options of the bot, null to use the defaults
+	 */
+	default BotOptions getOptions() {
+		return null;
+	}
+
 	/**
 	 * Called when the BotSession is being closed
 	 */
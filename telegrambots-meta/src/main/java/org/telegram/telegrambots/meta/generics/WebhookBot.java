@@ -30,7 +30,17 @@ public interface WebhookBot {
     String getBotToken();
 
     /**
-     * Execute setWebhook method to set up the url of the webhook
+     * Gets options of this bot
+     * @return Options of the bot, null to use the defaults
+     */
+    default BotOptions getOptions() {
+        return null;
+    }
+
+    /**
+     * Execute setWebhook method to set up the url of the webhook. The allowed updates of
+     * {@link #getOptions()}, if any, must be sent as {@link org.telegram.telegrambots.meta.api.methods.updates.SetWebhook#setAllowedUpdates(java.util.List)}
+     * so Telegram doesn't deliver update types that the bot ignores.
      * @param url Url for the webhook
      * @param publicCertificatePath Path to the public key certificate of the webhook
      * @throws TelegramApiRequestException In case of error executing the request
@@ -5,23 +5,23 @@ import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.InputStreamContentProvider;
-import org.eclipse.jetty.client.util.MultiPartContentProvider;
-import org.eclipse.jetty.client.util.PathContentProvider;
 import org.eclipse.jetty.client.util.StringContentProvider;
-import org.telegram.telegrambots.meta.ApiConstants;
+import org.telegram.telegrambots.downloads.DownloadManager;
+import org.telegram.telegrambots.inline.InlineQueryTracker;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.SetChatPhoto;
 import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
 import org.telegram.telegrambots.meta.api.methods.send.SendAudio;
@@ -37,18 +37,22 @@ import org.telegram.telegrambots.meta.api.methods.stickers.CreateNewStickerSet;
 import org.telegram.telegrambots.meta.api.methods.stickers.UploadStickerFile;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageMedia;
 import org.telegram.telegrambots.meta.api.objects.File;
-import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
-import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
-import org.telegram.telegrambots.meta.api.objects.media.InputMediaAudio;
-import org.telegram.telegrambots.meta.api.objects.media.InputMediaDocument;
-import org.telegram.telegrambots.meta.api.objects.media.InputMediaVideo;
 import org.telegram.telegrambots.meta.bots.AbsSender;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
 import org.telegram.telegrambots.meta.updateshandlers.DownloadFileCallback;
 import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+import org.telegram.telegrambots.multipart.MultipartBody;
+import org.telegram.telegrambots.multipart.MultipartEncoder;
+import org.telegram.telegrambots.sending.ApiMethodCache;
+import org.telegram.telegrambots.sending.EndpointGuard;
+import org.telegram.telegrambots.sending.Priority;
+import org.telegram.telegrambots.sending.PriorityExecutor;
+import org.telegram.telegrambots.sending.PriorityRateLimiter;
+import org.telegram.telegrambots.sending.SendScheduler;
+import org.telegram.telegrambots.updatesreceivers.UpdateDeadlines;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -59,16 +63,29 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 @SuppressWarnings({ "unused", "WeakerAccess" })
 public abstract class DefaultAbsSender extends AbsSender {
+	private static final long STARVATION_SECONDS = 5;
 
 	protected final ExecutorService exe;
+	private final PriorityExecutor priorityExecutor;
 	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final MultipartEncoder multipartEncoder = new MultipartEncoder(objectMapper);
+	private final DefaultBotOptions options;
 	private volatile HttpClient httpclient;
+	private SendScheduler sendScheduler;
+	private DownloadManager downloadManager;
 
 	protected DefaultAbsSender(HttpClient httpclient) {
+		this(httpclient, new DefaultBotOptions());
+	}
+
+	protected DefaultAbsSender(HttpClient httpclient, DefaultBotOptions options) {
 		super();
 
-		this.exe = Executors.newFixedThreadPool(1);
+		this.priorityExecutor = new PriorityExecutor(options.getSenderThreads(), STARVATION_SECONDS, TimeUnit.SECONDS,
+				"Telegram Sender");
+		this.exe = priorityExecutor;
 		this.httpclient = httpclient;
+		this.options = options;
 	}
 
 	/**
@@ -120,238 +137,31 @@ public abstract class DefaultAbsSender extends AbsSender {
 	@Override
 	public final Message execute(SendDocument sendDocument) throws TelegramApiException {
 		assertParamNotNull(sendDocument, "sendDocument");
-
-		sendDocument.validate();
-		try {
-			String url = getBaseUrl() + SendDocument.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendDocument.getChatId()), null);
-
-			addInputFile(multiPart, sendDocument.getDocument(), SendDocument.DOCUMENT_FIELD, true);
-
-			if (sendDocument.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendDocument.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendDocument.getReplyMarkup())),
-						null);
-			}
-			if (sendDocument.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendDocument.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendDocument.getReplyToMessageId().toString()), null);
-			}
-			if (sendDocument.getCaption() != null) {
-				multiPart.addFieldPart(SendDocument.CAPTION_FIELD, new StringContentProvider(sendDocument.getCaption()),
-						null);
-				if (sendDocument.getParseMode() != null) {
-					multiPart.addFieldPart(SendDocument.PARSEMODE_FIELD,
-							new StringContentProvider(sendDocument.getParseMode()), null);
-				}
-			}
-			if (sendDocument.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendDocument.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendDocument.getDisableNotification().toString()), null);
-			}
-
-			if (sendDocument.getThumb() != null) {
-				addInputFile(multiPart, sendDocument.getThumb(), SendDocument.THUMB_FIELD, false);
-				multiPart.addFieldPart(SendDocument.THUMB_FIELD,
-						new StringContentProvider(sendDocument.getThumb().getAttachName()), null);
-			}
-
-			httppost.content(multiPart);
-
-			return sendDocument.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send document", e);
-		}
+		return sendMultipartMethod(sendDocument, "Unable to send document");
 	}
 
 	@Override
 	public final Message execute(SendPhoto sendPhoto) throws TelegramApiException {
 		assertParamNotNull(sendPhoto, "sendPhoto");
-
-		sendPhoto.validate();
-		try {
-			String url = getBaseUrl() + SendPhoto.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendPhoto.getChatId()), null);
-			addInputFile(multiPart, sendPhoto.getPhoto(), SendPhoto.PHOTO_FIELD, true);
-
-			if (sendPhoto.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendPhoto.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendPhoto.getReplyMarkup())), null);
-			}
-			if (sendPhoto.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendPhoto.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendPhoto.getReplyToMessageId().toString()), null);
-			}
-			if (sendPhoto.getCaption() != null) {
-				multiPart.addFieldPart(SendPhoto.CAPTION_FIELD, new StringContentProvider(sendPhoto.getCaption()),
-						null);
-				if (sendPhoto.getParseMode() != null) {
-					multiPart.addFieldPart(SendPhoto.PARSEMODE_FIELD,
-							new StringContentProvider(sendPhoto.getParseMode()), null);
-				}
-			}
-			if (sendPhoto.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendPhoto.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendPhoto.getDisableNotification().toString()), null);
-			}
-			httppost.content(multiPart);
-
-			return sendPhoto.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send photo", e);
-		}
+		return sendMultipartMethod(sendPhoto, "Unable to send photo");
 	}
 
 	@Override
 	public final Message execute(SendVideo sendVideo) throws TelegramApiException {
 		assertParamNotNull(sendVideo, "sendVideo");
-
-		sendVideo.validate();
-		try {
-			String url = getBaseUrl() + SendVideo.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendVideo.getChatId()), null);
-
-			addInputFile(multiPart, sendVideo.getVideo(), SendVideo.VIDEO_FIELD, true);
-
-			if (sendVideo.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendVideo.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendVideo.getReplyMarkup())), null);
-			}
-			if (sendVideo.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendVideo.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendVideo.getReplyToMessageId().toString()), null);
-			}
-			if (sendVideo.getCaption() != null) {
-				multiPart.addFieldPart(SendVideo.CAPTION_FIELD, new StringContentProvider(sendVideo.getCaption()),
-						null);
-				if (sendVideo.getParseMode() != null) {
-					multiPart.addFieldPart(SendVideo.PARSEMODE_FIELD,
-							new StringContentProvider(sendVideo.getParseMode()), null);
-				}
-			}
-			if (sendVideo.getSupportsStreaming() != null) {
-				multiPart.addFieldPart(SendVideo.SUPPORTSSTREAMING_FIELD,
-						new StringContentProvider(sendVideo.getSupportsStreaming().toString()), null);
-			}
-			if (sendVideo.getDuration() != null) {
-				multiPart.addFieldPart(SendVideo.DURATION_FIELD,
-						new StringContentProvider(sendVideo.getDuration().toString()), null);
-			}
-			if (sendVideo.getWidth() != null) {
-				multiPart.addFieldPart(SendVideo.WIDTH_FIELD,
-						new StringContentProvider(sendVideo.getWidth().toString()), null);
-			}
-			if (sendVideo.getHeight() != null) {
-				multiPart.addFieldPart(SendVideo.HEIGHT_FIELD,
-						new StringContentProvider(sendVideo.getHeight().toString()), null);
-			}
-			if (sendVideo.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendVideo.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendVideo.getDisableNotification().toString()), null);
-			}
-			if (sendVideo.getThumb() != null) {
-				addInputFile(multiPart, sendVideo.getThumb(), SendVideo.THUMB_FIELD, false);
-				multiPart.addFieldPart(SendVideo.THUMB_FIELD,
-						new StringContentProvider(sendVideo.getThumb().getAttachName()), null);
-			}
-
-			httppost.content(multiPart);
-
-			return sendVideo.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send video", e);
-		}
+		return sendMultipartMethod(sendVideo, "Unable to send video");
 	}
 
 	@Override
 	public final Message execute(SendVideoNote sendVideoNote) throws TelegramApiException {
 		assertParamNotNull(sendVideoNote, "sendVideoNote");
-
-		sendVideoNote.validate();
-		try {
-			String url = getBaseUrl() + SendVideoNote.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendVideoNote.getChatId()), null);
-
-			addInputFile(multiPart, sendVideoNote.getVideoNote(), SendVideoNote.VIDEONOTE_FIELD, true);
-
-			if (sendVideoNote.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendVideoNote.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendVideoNote.getReplyMarkup())),
-						null);
-			}
-			if (sendVideoNote.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendVideoNote.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendVideoNote.getReplyToMessageId().toString()), null);
-			}
-			if (sendVideoNote.getDuration() != null) {
-				multiPart.addFieldPart(SendVideoNote.DURATION_FIELD,
-						new StringContentProvider(sendVideoNote.getDuration().toString()), null);
-			}
-			if (sendVideoNote.getLength() != null) {
-				multiPart.addFieldPart(SendVideoNote.LENGTH_FIELD,
-						new StringContentProvider(sendVideoNote.getLength().toString()), null);
-			}
-			if (sendVideoNote.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendVideoNote.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendVideoNote.getDisableNotification().toString()), null);
-			}
-			if (sendVideoNote.getThumb() != null) {
-				addInputFile(multiPart, sendVideoNote.getThumb(), SendVideoNote.THUMB_FIELD, false);
-				multiPart.addFieldPart(SendVideoNote.THUMB_FIELD,
-						new StringContentProvider(sendVideoNote.getThumb().getAttachName()), null);
-			}
-			httppost.content(multiPart);
-
-			return sendVideoNote.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send video note", e);
-		}
+		return sendMultipartMethod(sendVideoNote, "Unable to send video note");
 	}
 
 	@Override
 	public final Message execute(SendSticker sendSticker) throws TelegramApiException {
 		assertParamNotNull(sendSticker, "sendSticker");
-
-		sendSticker.validate();
-		try {
-			String url = getBaseUrl() + SendSticker.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendSticker.getChatId()), null);
-
-			addInputFile(multiPart, sendSticker.getSticker(), SendSticker.STICKER_FIELD, true);
-
-			if (sendSticker.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendSticker.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendSticker.getReplyMarkup())), null);
-			}
-			if (sendSticker.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendSticker.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendSticker.getReplyToMessageId().toString()), null);
-			}
-			if (sendSticker.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendSticker.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendSticker.getDisableNotification().toString()), null);
-			}
-			httppost.content(multiPart);
-
-			return sendSticker.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send sticker", e);
-		}
+		return sendMultipartMethod(sendSticker, "Unable to send sticker");
 	}
 
 	/**
@@ -365,59 +175,7 @@ public abstract class DefaultAbsSender extends AbsSender {
 	@Override
 	public final Message execute(SendAudio sendAudio) throws TelegramApiException {
 		assertParamNotNull(sendAudio, "sendAudio");
-		sendAudio.validate();
-		try {
-			String url = getBaseUrl() + SendAudio.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendAudio.getChatId()), null);
-
-			addInputFile(multiPart, sendAudio.getAudio(), SendAudio.AUDIO_FIELD, true);
-
-			if (sendAudio.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendAudio.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendAudio.getReplyMarkup())), null);
-			}
-			if (sendAudio.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendAudio.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendAudio.getReplyToMessageId().toString()), null);
-			}
-			if (sendAudio.getPerformer() != null) {
-				multiPart.addFieldPart(SendAudio.PERFOMER_FIELD, new StringContentProvider(sendAudio.getPerformer()),
-						null);
-			}
-			if (sendAudio.getTitle() != null) {
-				multiPart.addFieldPart(SendAudio.TITLE_FIELD, new StringContentProvider(sendAudio.getTitle()), null);
-			}
-			if (sendAudio.getDuration() != null) {
-				multiPart.addFieldPart(SendAudio.DURATION_FIELD,
-						new StringContentProvider(sendAudio.getDuration().toString()), null);
-			}
-			if (sendAudio.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendAudio.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendAudio.getDisableNotification().toString()), null);
-			}
-			if (sendAudio.getCaption() != null) {
-				multiPart.addFieldPart(SendAudio.CAPTION_FIELD, new StringContentProvider(sendAudio.getCaption()),
-						null);
-				if (sendAudio.getParseMode() != null) {
-					multiPart.addFieldPart(SendAudio.PARSEMODE_FIELD,
-							new StringContentProvider(sendAudio.getParseMode()), null);
-				}
-			}
-			if (sendAudio.getThumb() != null) {
-				addInputFile(multiPart, sendAudio.getThumb(), SendAudio.THUMB_FIELD, false);
-				multiPart.addFieldPart(SendAudio.THUMB_FIELD,
-						new StringContentProvider(sendAudio.getThumb().getAttachName()), null);
-			}
-
-			httppost.content(multiPart);
-
-			return sendAudio.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send sticker", e);
-		}
+		return sendMultipartMethod(sendAudio, "Unable to send audio");
 	}
 
 	/**
@@ -432,318 +190,169 @@ public abstract class DefaultAbsSender extends AbsSender {
 	@Override
 	public final Message execute(SendVoice sendVoice) throws TelegramApiException {
 		assertParamNotNull(sendVoice, "sendVoice");
-		sendVoice.validate();
-		try {
-			String url = getBaseUrl() + SendVoice.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendVoice.getChatId()), null);
-
-			addInputFile(multiPart, sendVoice.getVoice(), SendVoice.VOICE_FIELD, true);
-
-			if (sendVoice.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendVoice.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendVoice.getReplyMarkup())), null);
-			}
-			if (sendVoice.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendVoice.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendVoice.getReplyToMessageId().toString()), null);
-			}
-			if (sendVoice.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendVoice.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendVoice.getDisableNotification().toString()), null);
-			}
-			if (sendVoice.getDuration() != null) {
-				multiPart.addFieldPart(SendVoice.DURATION_FIELD,
-						new StringContentProvider(sendVoice.getDuration().toString()), null);
-			}
-			if (sendVoice.getCaption() != null) {
-				multiPart.addFieldPart(SendVoice.CAPTION_FIELD, new StringContentProvider(sendVoice.getCaption()),
-						null);
-				if (sendVoice.getParseMode() != null) {
-					multiPart.addFieldPart(SendVoice.PARSEMODE_FIELD,
-							new StringContentProvider(sendVoice.getParseMode()), null);
-				}
-			}
-			httppost.content(multiPart);
-
-			return sendVoice.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to send voice", e);
-		}
+		return sendMultipartMethod(sendVoice, "Unable to send voice");
 	}
 
 	@Override
 	public Boolean execute(SetChatPhoto setChatPhoto) throws TelegramApiException {
 		assertParamNotNull(setChatPhoto, "setChatPhoto");
-		setChatPhoto.validate();
-
-		try {
-			String url = getBaseUrl() + SetChatPhoto.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(setChatPhoto.getChatId()), null);
-
-			if (setChatPhoto.getPhoto() != null) {
-				multiPart.addFilePart(setChatPhoto.getPhoto().getName(), setChatPhoto.getPhoto().getName(),
-						new PathContentProvider(Paths.get(setChatPhoto.getPhoto().getAbsolutePath())), null);
-			} else if (setChatPhoto.getPhotoStream() != null) {
-				multiPart.addFilePart(setChatPhoto.getPhoto().getName(), setChatPhoto.getPhoto().getName(),
-						new InputStreamContentProvider(setChatPhoto.getPhotoStream()), null);
-			}
-			httppost.content(multiPart);
-
-			return setChatPhoto.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to set chat photo", e);
-		}
+		return sendMultipartMethod(setChatPhoto, "Unable to set chat photo");
 	}
 
 	@Override
 	public List<Message> execute(SendMediaGroup sendMediaGroup) throws TelegramApiException {
 		assertParamNotNull(sendMediaGroup, "sendMediaGroup");
-		sendMediaGroup.validate();
-
-		try {
-			String url = getBaseUrl() + SendMediaGroup.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			multiPart.addFieldPart(SendPhoto.CHATID_FIELD, new StringContentProvider(sendMediaGroup.getChatId()), null);
-
-			addInputData(multiPart, sendMediaGroup.getMedia(), SendMediaGroup.MEDIA_FIELD);
-
-			if (sendMediaGroup.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendMediaGroup.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendMediaGroup.getDisableNotification().toString()), null);
-			}
-
-			if (sendMediaGroup.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendMediaGroup.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendMediaGroup.getReplyToMessageId().toString()), null);
-			}
-
-			httppost.content(multiPart);
-
-			return sendMediaGroup.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to set chat photo", e);
-		}
+		return sendMultipartMethod(sendMediaGroup, "Unable to send media group");
 	}
 
 	@Override
 	public Boolean execute(AddStickerToSet addStickerToSet) throws TelegramApiException {
 		assertParamNotNull(addStickerToSet, "addStickerToSet");
-		addStickerToSet.validate();
-		try {
-			String url = getBaseUrl() + AddStickerToSet.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-
-			multiPart.addFieldPart(AddStickerToSet.USERID_FIELD,
-					new StringContentProvider(addStickerToSet.getUserId().toString()), null);
-			multiPart.addFieldPart(AddStickerToSet.NAME_FIELD, new StringContentProvider(addStickerToSet.getName()),
-					null);
-			multiPart.addFieldPart(AddStickerToSet.EMOJIS_FIELD, new StringContentProvider(addStickerToSet.getEmojis()),
-					null);
-			addInputFile(multiPart, addStickerToSet.getPngSticker(), AddStickerToSet.PNGSTICKER_FIELD, true);
-
-			if (addStickerToSet.getMaskPosition() != null) {
-				multiPart.addFieldPart(AddStickerToSet.MASKPOSITION_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(addStickerToSet.getMaskPosition())),
-						null);
-			}
-
-			httppost.content(multiPart);
-
-			return addStickerToSet.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to add sticker to set", e);
-		}
+		return sendMultipartMethod(addStickerToSet, "Unable to add sticker to set");
 	}
 
 	@Override
 	public Boolean execute(CreateNewStickerSet createNewStickerSet) throws TelegramApiException {
 		assertParamNotNull(createNewStickerSet, "createNewStickerSet");
-		createNewStickerSet.validate();
-		try {
-			String url = getBaseUrl() + CreateNewStickerSet.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-
-			multiPart.addFieldPart(CreateNewStickerSet.USERID_FIELD,
-					new StringContentProvider(createNewStickerSet.getUserId().toString()), null);
-			multiPart.addFieldPart(CreateNewStickerSet.NAME_FIELD,
-					new StringContentProvider(createNewStickerSet.getName()), null);
-			multiPart.addFieldPart(CreateNewStickerSet.TITLE_FIELD,
-					new StringContentProvider(createNewStickerSet.getTitle()), null);
-			multiPart.addFieldPart(CreateNewStickerSet.EMOJIS_FIELD,
-					new StringContentProvider(createNewStickerSet.getEmojis()), null);
-			multiPart.addFieldPart(CreateNewStickerSet.CONTAINSMASKS_FIELD,
-					new StringContentProvider(createNewStickerSet.getContainsMasks().toString()), null);
-			addInputFile(multiPart, createNewStickerSet.getPngSticker(), CreateNewStickerSet.PNGSTICKER_FIELD, true);
-
-			if (createNewStickerSet.getMaskPosition() != null) {
-				multiPart.addFieldPart(CreateNewStickerSet.MASKPOSITION_FIELD, new StringContentProvider(
-						objectMapper.writeValueAsString(createNewStickerSet.getMaskPosition())), null);
-			}
-			httppost.content(multiPart);
-
-			return createNewStickerSet.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to create new sticker set", e);
-		}
+		return sendMultipartMethod(createNewStickerSet, "Unable to create new sticker set");
 	}
 
 	@Override
 	public File execute(UploadStickerFile uploadStickerFile) throws TelegramApiException {
 		assertParamNotNull(uploadStickerFile, "uploadStickerFile");
-		uploadStickerFile.validate();
-		try {
-			String url = getBaseUrl() + UploadStickerFile.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-
-			multiPart.addFieldPart(UploadStickerFile.USERID_FIELD,
-					new StringContentProvider(uploadStickerFile.getUserId().toString()), null);
-			addInputFile(multiPart, uploadStickerFile.getPngSticker(), UploadStickerFile.PNGSTICKER_FIELD, true);
-			httppost.content(multiPart);
-
-			return uploadStickerFile.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to upload new sticker file", e);
-		}
+		return sendMultipartMethod(uploadStickerFile, "Unable to upload new sticker file");
 	}
 
 	@Override
 	public Serializable execute(EditMessageMedia editMessageMedia) throws TelegramApiException {
 		assertParamNotNull(editMessageMedia, "editMessageMedia");
-		editMessageMedia.validate();
-		try {
-			String url = getBaseUrl() + EditMessageMedia.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
-			if (editMessageMedia.getInlineMessageId() == null) {
-				multiPart.addFieldPart(EditMessageMedia.CHATID_FIELD,
-						new StringContentProvider(editMessageMedia.getChatId()), null);
-				multiPart.addFieldPart(EditMessageMedia.MESSAGEID_FIELD,
-						new StringContentProvider(editMessageMedia.getMessageId().toString()), null);
-
-			} else {
-				multiPart.addFieldPart(EditMessageMedia.INLINE_MESSAGE_ID_FIELD,
-						new StringContentProvider(editMessageMedia.getInlineMessageId()), null);
-			}
-			if (editMessageMedia.getReplyMarkup() != null) {
-				multiPart.addFieldPart(EditMessageMedia.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(editMessageMedia.getReplyMarkup())),
-						null);
-			}
-
-			addInputData(multiPart, editMessageMedia.getMedia(), EditMessageMedia.MEDIA_FIELD, true);
-
-			httppost.content(multiPart);
-
-			return editMessageMedia.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to edit message media", e);
-		}
+		return sendMultipartMethod(editMessageMedia, "Unable to edit message media");
 	}
 
 	@Override
 	public Message execute(SendAnimation sendAnimation) throws TelegramApiException {
 		assertParamNotNull(sendAnimation, "sendAnimation");
-		sendAnimation.validate();
-		try {
-			String url = getBaseUrl() + SendAnimation.PATH;
-			Request httppost = configuredHttpPost(url);
-
-			MultiPartContentProvider multiPart = new MultiPartContentProvider();
+		return sendMultipartMethod(sendAnimation, "Unable to send animation");
+	}
 
-			multiPart.addFieldPart(SendAnimation.CHATID_FIELD, new StringContentProvider(sendAnimation.getChatId()),
-					null);
-			addInputFile(multiPart, sendAnimation.getAnimation(), SendAnimation.ANIMATION_FIELD, true);
+	/**
+	 * Sends any method that needs to be uploaded as multipart/form-data and has
+	 * been registered in the {@link MultipartEncoder} of this sender
+	 * 
+	 * @param method Method to send
+	 * @return Response of the method
+	 * @throws TelegramApiException If there is any error sending the method
+	 */
+	public final <T extends Serializable> T executeMultipart(PartialBotApiMethod<T> method)
+			throws TelegramApiException {
+		assertParamNotNull(method, "method");
+		return sendMultipartMethod(method, "Unable to execute " + method.getClass().getSimpleName() + " method");
+	}
 
-			if (sendAnimation.getReplyMarkup() != null) {
-				multiPart.addFieldPart(SendAnimation.REPLYMARKUP_FIELD,
-						new StringContentProvider(objectMapper.writeValueAsString(sendAnimation.getReplyMarkup())),
-						null);
-			}
-			if (sendAnimation.getReplyToMessageId() != null) {
-				multiPart.addFieldPart(SendAnimation.REPLYTOMESSAGEID_FIELD,
-						new StringContentProvider(sendAnimation.getReplyToMessageId().toString()), null);
-			}
-			if (sendAnimation.getDisableNotification() != null) {
-				multiPart.addFieldPart(SendAnimation.DISABLENOTIFICATION_FIELD,
-						new StringContentProvider(sendAnimation.getDisableNotification().toString()), null);
-			}
-			if (sendAnimation.getDuration() != null) {
-				multiPart.addFieldPart(SendAnimation.DURATION_FIELD,
-						new StringContentProvider(sendAnimation.getDuration().toString()), null);
-			}
-			if (sendAnimation.getWidth() != null) {
-				multiPart.addFieldPart(SendAnimation.WIDTH_FIELD,
-						new StringContentProvider(sendAnimation.getWidth().toString()), null);
-			}
-			if (sendAnimation.getHeight() != null) {
-				multiPart.addFieldPart(SendAnimation.HEIGHT_FIELD,
-						new StringContentProvider(sendAnimation.getHeight().toString()), null);
-			}
-			if (sendAnimation.getThumb() != null) {
-				addInputFile(multiPart, sendAnimation.getThumb(), SendAnimation.THUMB_FIELD, false);
-				multiPart.addFieldPart(SendAnimation.THUMB_FIELD,
-						new StringContentProvider(sendAnimation.getThumb().getAttachName()), null);
-			}
+	public MultipartEncoder getMultipartEncoder() {
+		return multipartEncoder;
+	}
 
-			if (sendAnimation.getCaption() != null) {
-				multiPart.addFieldPart(SendAnimation.CAPTION_FIELD,
-						new StringContentProvider(sendAnimation.getCaption()), null);
-				if (sendAnimation.getParseMode() != null) {
-					multiPart.addFieldPart(SendAnimation.PARSEMODE_FIELD,
-							new StringContentProvider(sendAnimation.getParseMode()), null);
-				}
-			}
-			httppost.content(multiPart);
+	// Simplified methods
 
-			return sendAnimation.deserializeResponse(sendHttpPostRequest(httppost));
-		} catch (IOException e) {
-			throw new TelegramApiException("Unable to edit message media", e);
+	/**
+	 * Sends a method asynchronously with a priority other than the one set for
+	 * its class in the options
+	 *
+	 * @param method   Method to send
+	 * @param priority Priority of the method
+	 * @param callback Callback of the result
+	 */
+	public final <T extends Serializable, Method extends BotApiMethod<T>, Callback extends SentCallback<T>> void executeAsync(
+			Method method, Priority priority, Callback callback) throws TelegramApiException {
+		if (method == null) {
+			throw new TelegramApiException("Parameter method can not be null");
 		}
+		if (callback == null) {
+			throw new TelegramApiException("Parameter callback can not be null");
+		}
+		sendApiMethodAsync(method, priority, callback);
 	}
 
-	// Simplified methods
-
 	@Override
 	protected final <T extends Serializable, Method extends BotApiMethod<T>, Callback extends SentCallback<T>> void sendApiMethodAsync(
 			Method method, Callback callback) {
+		sendApiMethodAsync(method, options.getPriority(method), callback);
+	}
+
+	private <T extends Serializable, Method extends BotApiMethod<T>, Callback extends SentCallback<T>> void sendApiMethodAsync(
+			Method method, Priority priority, Callback callback) {
+		// Claimed before waiting in the queue, so an automatic answer sent
+		// meanwhile doesn't win
+		boolean claimed = claimAnswer(method);
 		// noinspection Convert2Lambda
-		exe.submit(new Runnable() {
+		priorityExecutor.execute(new Runnable() {
 			@Override
 			public void run() {
+				if (!claimed || isSuperseded(method)) {
+					callback.onResult(method, notSent());
+					return;
+				}
+				ApiMethodCache apiMethodCache = options.getApiMethodCache();
+				if (apiMethodCache != null && apiMethodCache.isCached(method)) {
+					try {
+						callback.onResult(method, apiMethodCache.get(method, () -> executeApiMethod(method, priority)));
+					} catch (TelegramApiRequestException e) {
+						releaseAnswer(method);
+						callback.onError(method, e);
+					} catch (TelegramApiException e) {
+						releaseAnswer(method);
+						callback.onException(method, e);
+					}
+					return;
+				}
 				try {
+					acquireRatePermit(priority);
 					String responseContent = sendMethodRequest(method);
 					try {
-						callback.onResult(method, method.deserializeResponse(responseContent));
+						T result = method.deserializeResponse(responseContent);
+						if (apiMethodCache != null) {
+							apiMethodCache.sent(method);
+						}
+						callback.onResult(method, result);
 					} catch (TelegramApiRequestException e) {
+						releaseAnswer(method);
 						callback.onError(method, e);
 					}
-				} catch (IOException | TelegramApiValidationException e) {
+				} catch (IOException | TelegramApiException e) {
+					releaseAnswer(method);
 					callback.onException(method, e);
 				}
 
 			}
-		});
+		}, priority);
 	}
 
 	@Override
 	protected final <T extends Serializable, Method extends BotApiMethod<T>> T sendApiMethod(Method method)
 			throws TelegramApiException {
+		if (!claimAnswer(method) || isSuperseded(method)) {
+			return notSent();
+		}
+		ApiMethodCache apiMethodCache = options.getApiMethodCache();
+		try {
+			Priority priority = options.getPriority(method);
+			if (apiMethodCache == null) {
+				return executeApiMethod(method, priority);
+			}
+			T result = apiMethodCache.get(method, () -> executeApiMethod(method, priority));
+			apiMethodCache.sent(method);
+			return result;
+		} catch (TelegramApiException e) {
+			releaseAnswer(method);
+			throw e;
+		}
+	}
+
+	private <T extends Serializable, Method extends BotApiMethod<T>> T executeApiMethod(Method method,
+			Priority priority) throws TelegramApiException {
 		try {
+			acquireRatePermit(priority);
 			String responseContent = sendMethodRequest(method);
 			return method.deserializeResponse(responseContent);
 		} catch (IOException e) {
@@ -751,6 +360,64 @@ public abstract class DefaultAbsSender extends AbsSender {
 		}
 	}
 
+	/**
+	 * Waits for the rate limiter of the options, if there is one
+	 */
+	private void acquireRatePermit(Priority priority) throws TelegramApiException {
+		PriorityRateLimiter rateLimiter = options.getRateLimiter();
+		if (rateLimiter == null) {
+			return;
+		}
+		try {
+			rateLimiter.acquire(priority);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TelegramApiException("Interrupted waiting to send a request", e);
+		}
+	}
+
+	/**
+	 * Callback queries already answered automatically don't accept another
+	 * answer, so it is not sent
+	 *
+	 * @return False if the method is an answer that must not be sent
+	 */
+	private boolean claimAnswer(BotApiMethod<?> method) {
+		UpdateDeadlines updateDeadlines = options.getUpdateDeadlines();
+		return updateDeadlines == null || !(method instanceof AnswerCallbackQuery)
+				|| updateDeadlines.claimAnswer((AnswerCallbackQuery) method);
+	}
+
+	/**
+	 * Releases the claim of an answer that failed, so the automatic answer can
+	 * still be sent
+	 */
+	private void releaseAnswer(BotApiMethod<?> method) {
+		UpdateDeadlines updateDeadlines = options.getUpdateDeadlines();
+		if (updateDeadlines != null && method instanceof AnswerCallbackQuery) {
+			updateDeadlines.releaseAnswer((AnswerCallbackQuery) method);
+		}
+	}
+
+	/**
+	 * Answers to superseded inline queries are not shown by the client, so
+	 * they are not sent
+	 */
+	private boolean isSuperseded(BotApiMethod<?> method) {
+		InlineQueryTracker inlineQueryTracker = options.getInlineQueryTracker();
+		return inlineQueryTracker != null && method instanceof AnswerInlineQuery
+				&& inlineQueryTracker.suppressIfSuperseded(((AnswerInlineQuery) method).getInlineQueryId());
+	}
+
+	/**
+	 * Result of a method that was not sent, only used for AnswerInlineQuery and
+	 * AnswerCallbackQuery
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Serializable> T notSent() {
+		return (T) Boolean.FALSE;
+	}
+
 	private <T> Runnable getDownloadFileAsyncJob(T fileIdentifier, DownloadFileCallback<T> callback, String url,
 			String tempFileName) {
 		// noinspection Convert2Lambda
@@ -796,14 +463,46 @@ public abstract class DefaultAbsSender extends AbsSender {
 		return sendHttpPostRequest(httppost);
 	}
 
-	private String sendHttpPostRequest(Request httpPost) throws IOException {
+	private <T extends Serializable> T sendMultipartMethod(PartialBotApiMethod<T> method, String errorMessage)
+			throws TelegramApiException {
+		method.validate();
+		MultipartBody body = null;
+		try {
+			acquireRatePermit(options.getPriority(method));
+			body = multipartEncoder.encode(method, httpclient.getByteBufferPool());
+			Request httppost = configuredHttpPost(getBaseUrl() + body.getPath());
+			httppost.content(body.getContent());
+			return method.deserializeResponse(sendHttpPostRequest(httppost));
+		} catch (IOException e) {
+			throw new TelegramApiException(errorMessage, e);
+		} finally {
+			if (body != null) {
+				body.release();
+			}
+		}
+	}
 
+	private String sendHttpPostRequest(Request httpPost) throws IOException {
+		EndpointGuard endpointGuard = options.getEndpointGuard();
+		EndpointGuard.Permit permit = endpointGuard == null ? null : endpointGuard.acquire();
 		ContentResponse response;
 		try {
 			response = httpPost.send();
+			if (permit != null) {
+				permit.complete(response.getStatus());
+			}
 			return response.getContentAsString();
-		} catch (InterruptedException | TimeoutException | ExecutionException e) {
+		} catch (TimeoutException | ExecutionException e) {
+			if (permit != null) {
+				permit.fail();
+			}
 			throw new IOException(e.getMessage());
+		} catch (InterruptedException e) {
+			throw new IOException(e.getMessage());
+		} finally {
+			if (permit != null) {
+				permit.cancel();
+			}
 		}
 	}
 
@@ -811,73 +510,44 @@ public abstract class DefaultAbsSender extends AbsSender {
 		return httpclient.POST(url);
 	}
 
-	private void addInputData(MultiPartContentProvider builder, InputMedia<?> media, String mediaField,
-			boolean addField) throws IOException {
-		if (media.isNewMedia()) {
-			if (media.getMediaFile() != null) {
-				builder.addFilePart(media.getMediaName(), media.getMediaName(),
-						new PathContentProvider(Paths.get(media.getMediaFile().getAbsolutePath())), null);
-			} else if (media.getNewMediaStream() != null) {
-				builder.addFilePart(media.getMediaName(), media.getMediaName(),
-						new InputStreamContentProvider(media.getNewMediaStream()), null);
-			}
-		}
-
-		if (media instanceof InputMediaAudio) {
-			InputMediaAudio audio = (InputMediaAudio) media;
-			if (audio.getThumb() != null) {
-				addInputFile(builder, audio.getThumb(), InputMediaAudio.THUMB_FIELD, false);
-			}
-		} else if (media instanceof InputMediaDocument) {
-			InputMediaDocument document = (InputMediaDocument) media;
-			if (document.getThumb() != null) {
-				addInputFile(builder, document.getThumb(), InputMediaDocument.THUMB_FIELD, false);
-			}
-		} else if (media instanceof InputMediaVideo) {
-			InputMediaVideo video = (InputMediaVideo) media;
-			if (video.getThumb() != null) {
-				addInputFile(builder, video.getThumb(), InputMediaVideo.THUMB_FIELD, false);
-			}
-		}
-
-		if (addField) {
-			builder.addFieldPart(mediaField, new StringContentProvider(objectMapper.writeValueAsString(media)), null);
-		}
+	public final DefaultBotOptions getOptions() {
+		return options;
 	}
 
-	private void addInputData(MultiPartContentProvider builder, List<InputMedia> media, String mediaField)
-			throws IOException {
-		for (InputMedia<?> inputMedia : media) {
-			addInputData(builder, inputMedia, null, false);
+	/**
+	 * Gets the scheduler of delayed methods and chat actions of this bot,
+	 * running on the timer of its options
+	 *
+	 * @return Scheduler of this bot
+	 */
+	public final synchronized SendScheduler getSendScheduler() {
+		if (sendScheduler == null) {
+			sendScheduler = new SendScheduler(this, options.getTimer());
 		}
-
-		builder.addFieldPart(mediaField, new StringContentProvider(objectMapper.writeValueAsString(media)), null);
+		return sendScheduler;
 	}
 
-	private void addInputFile(MultiPartContentProvider multiPart, InputFile file, String fileField, boolean addField) {
-		if (file.isNew()) {
+	/**
+	 * Gets the manager of parallel and cached downloads of this bot, configured
+	 * by its options
+	 *
+	 * @return Download manager of this bot
+	 * @throws TelegramApiException If its directory can't be created
+	 */
+	public final synchronized DownloadManager getDownloadManager() throws TelegramApiException {
+		if (downloadManager == null) {
 			try {
-				if (file.getNewMediaFile() != null) {
-					multiPart.addFilePart(file.getMediaName(), file.getMediaName(),
-							new PathContentProvider(Paths.get(file.getNewMediaFile().getAbsolutePath())), null);
-				} else if (file.getNewMediaStream() != null) {
-					multiPart.addFilePart(file.getMediaName(), file.getMediaName(),
-							new InputStreamContentProvider(file.getNewMediaStream()), null);
-				}
+				downloadManager = new DownloadManager(this, options.getDownloadDirectory(),
+						options.getMaxDownloadCacheBytes(), options.getMaxParallelDownloads());
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				throw new TelegramApiException("Unable to create download directory", e);
 			}
-
-		}
-
-		if (addField) {
-			multiPart.addFieldPart(fileField, new StringContentProvider(file.getAttachName()), null);
 		}
+		return downloadManager;
 	}
 
 	public String getBaseUrl() {
-		return ApiConstants.BASE_URL + getBotToken() + "/";
+		return options.getBaseUrl() + getBotToken() + "/";
 	}
 
 	private void assertParamNotNull(Object param, String paramName) throws TelegramApiException {
@@ -0,0 +1,412 @@
+package org.telegram.telegrambots.bots;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.telegram.telegrambots.entities.EntityCache;
+import org.telegram.telegrambots.inline.InlineQueryTracker;
+import org.telegram.telegrambots.journal.UpdateJournal;
+import org.telegram.telegrambots.meta.ApiConstants;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerPreCheckoutQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerShippingQuery;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.updates.AllowedUpdates;
+import org.telegram.telegrambots.meta.generics.BotOptions;
+import org.telegram.telegrambots.sending.ApiMethodCache;
+import org.telegram.telegrambots.sending.EndpointGuard;
+import org.telegram.telegrambots.sending.Priority;
+import org.telegram.telegrambots.sending.PriorityRateLimiter;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
+import org.telegram.telegrambots.updatesreceivers.FloodGuard;
+import org.telegram.telegrambots.updatesreceivers.LoadShedder;
+import org.telegram.telegrambots.updatesreceivers.UpdateDeadlines;
+import org.telegram.telegrambots.updatesreceivers.UpdateDeduplicator;
+
+/**
+ * @author agent
+ * @version 1.0 Configurable options of a bot, shared by its sender and its
+ *          session
+ */
+public class DefaultBotOptions implements BotOptions {
+	private String baseUrl;
+	private long mediaGroupQuietMillis;
+	private List<String> allowedUpdates;
+	private List<String> messageFields;
+	private InlineQueryTracker inlineQueryTracker;
+	private HashedWheelTimer timer;
+	private boolean ownTimer;
+	private EntityCache entityCache;
+	private ApiMethodCache apiMethodCache;
+	private File downloadDirectory;
+	private long maxDownloadCacheBytes;
+	private int maxParallelDownloads;
+	private UpdateJournal updateJournal;
+	private UpdateDeduplicator updateDeduplicator;
+	private UpdateDeadlines updateDeadlines;
+	private LoadShedder loadShedder;
+	private FloodGuard floodGuard;
+	private final Map<Class<?>, Priority> methodPriorities = new ConcurrentHashMap<>();
+	private int senderThreads;
+	private PriorityRateLimiter rateLimiter;
+	private boolean endpointGuarded;
+
+	public DefaultBotOptions() {
+		baseUrl = ApiConstants.BASE_URL;
+		downloadDirectory = new File(System.getProperty("java.io.tmpdir"), "telegrambots-downloads");
+		maxDownloadCacheBytes = 256L * 1024 * 1024;
+		maxParallelDownloads = 4;
+		senderThreads = 1;
+		methodPriorities.put(AnswerCallbackQuery.class, Priority.INTERACTIVE);
+		methodPriorities.put(AnswerInlineQuery.class, Priority.INTERACTIVE);
+		methodPriorities.put(AnswerPreCheckoutQuery.class, Priority.INTERACTIVE);
+		methodPriorities.put(AnswerShippingQuery.class, Priority.INTERACTIVE);
+		methodPriorities.put(SendChatAction.class, Priority.INTERACTIVE);
+	}
+
+	@Override
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	@Override
+	public List<String> getAllowedUpdates() {
+		return allowedUpdates;
+	}
+
+	/**
+	 * Sets the types of updates handled by the bot (see {@link AllowedUpdates}).
+	 * They are sent to Telegram as allowed_updates and any other type still
+	 * received is dropped before being deserialized.
+	 *
+	 * @param allowedUpdates Update types to receive, null to receive all of them
+	 *                       (default)
+	 */
+	public void setAllowedUpdates(List<String> allowedUpdates) {
+		this.allowedUpdates = allowedUpdates;
+	}
+
+	public List<String> getMessageFields() {
+		return messageFields;
+	}
+
+	/**
+	 * Sets a projection of the messages received. Only the listed fields (json
+	 * names, like "text" or "entities") are bound, the rest are skipped while
+	 * parsing the response. message_id, date and chat are always bound.
+	 * media_group_id must be listed if albums are aggregated.
+	 *
+	 * @param messageFields Message fields to bind, null to bind all of them
+	 *                      (default)
+	 */
+	public void setMessageFields(List<String> messageFields) {
+		this.messageFields = messageFields;
+	}
+
+	public long getMediaGroupQuietMillis() {
+		return mediaGroupQuietMillis;
+	}
+
+	/**
+	 * Enables the aggregation of albums. Updates sharing a media_group_id are
+	 * held until no new one arrives for this time and then delivered together
+	 * to {@link org.telegram.telegrambots.meta.generics.LongPollingBot#onMediaGroupReceived(java.util.List)}
+	 *
+	 * @param mediaGroupQuietMillis Quiet window in milliseconds, 0 to disable it
+	 *                              (default)
+	 */
+	public void setMediaGroupQuietMillis(long mediaGroupQuietMillis) {
+		this.mediaGroupQuietMillis = mediaGroupQuietMillis;
+	}
+
+	/**
+	 * @return Tracker of inline queries, null if superseded queries are not
+	 *         dropped
+	 */
+	public InlineQueryTracker getInlineQueryTracker() {
+		return inlineQueryTracker;
+	}
+
+	/**
+	 * Enables dropping superseded inline queries. When a user sends a new
+	 * inline query, the older ones still waiting to be handled are skipped and
+	 * their AnswerInlineQuery is not sent (see {@link InlineQueryTracker}).
+	 *
+	 * @param supersedeInlineQueries True to drop superseded queries, false to
+	 *                               handle all of them (default)
+	 */
+	public void setSupersedeInlineQueries(boolean supersedeInlineQueries) {
+		inlineQueryTracker = supersedeInlineQueries ? new InlineQueryTracker() : null;
+	}
+
+	/**
+	 * @return Cache of the users and chats seen in the updates, null if they are
+	 *         not cached
+	 */
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Enables caching the users and chats of the updates received, so their
+	 * names, usernames and types can be read without calling the API (see
+	 * {@link EntityCache})
+	 *
+	 * @param entityCacheSize Maximum number of users, and of chats, to keep, 0
+	 *                        to disable the cache (default)
+	 */
+	public void setEntityCacheSize(int entityCacheSize) {
+		entityCache = entityCacheSize > 0 ? new EntityCache(entityCacheSize) : null;
+	}
+
+	/**
+	 * @return Cache of the results of read only methods, null if they are not
+	 *         cached
+	 */
+	public ApiMethodCache getApiMethodCache() {
+		return apiMethodCache;
+	}
+
+	/**
+	 * Enables caching the results of read only methods like GetChat or
+	 * GetChatAdministrators. The session invalidates the results of a chat when
+	 * its updates show it changed (see {@link ApiMethodCache})
+	 *
+	 * @param apiMethodCache Cache to use, null to not cache results (default)
+	 */
+	public void setApiMethodCache(ApiMethodCache apiMethodCache) {
+		this.apiMethodCache = apiMethodCache;
+	}
+
+	public File getDownloadDirectory() {
+		return downloadDirectory;
+	}
+
+	public long getMaxDownloadCacheBytes() {
+		return maxDownloadCacheBytes;
+	}
+
+	/**
+	 * Sets where the download manager of the sender keeps the files downloaded
+	 * (see {@link org.telegram.telegrambots.downloads.DownloadManager})
+	 *
+	 * @param downloadDirectory     Directory of the files, by default
+	 *                              telegrambots-downloads in the temporary
+	 *                              directory
+	 * @param maxDownloadCacheBytes Maximum size of the files kept, 256MB by
+	 *                              default
+	 */
+	public void setDownloadCache(File downloadDirectory, long maxDownloadCacheBytes) {
+		this.downloadDirectory = downloadDirectory;
+		this.maxDownloadCacheBytes = maxDownloadCacheBytes;
+	}
+
+	public int getMaxParallelDownloads() {
+		return maxParallelDownloads;
+	}
+
+	/**
+	 * @param maxParallelDownloads Maximum number of files downloaded at the same
+	 *                             time by the download manager, 4 by default
+	 */
+	public void setMaxParallelDownloads(int maxParallelDownloads) {
+		this.maxParallelDownloads = maxParallelDownloads;
+	}
+
+	public UpdateJournal getUpdateJournal() {
+		return updateJournal;
+	}
+
+	/**
+	 * Enables journaling the raw updates received by the session, exactly as
+	 * Telegram sent them, before they are filtered or deserialized. They can be
+	 * replayed later with {@link org.telegram.telegrambots.journal.UpdateReplayer}
+	 *
+	 * @param updateJournal Journal to append the updates to, null to not
+	 *                      journal them (default)
+	 */
+	public void setUpdateJournal(UpdateJournal updateJournal) {
+		this.updateJournal = updateJournal;
+	}
+
+	public UpdateDeduplicator getUpdateDeduplicator() {
+		return updateDeduplicator;
+	}
+
+	/**
+	 * Enables dropping updates already handled, like the ones received again
+	 * after a crash. Updates are checked right before being handed to the bot,
+	 * and only remembered once the bot returns from handling them
+	 *
+	 * @param updateDeduplicator Filter of the updates, kept in a file to work
+	 *                           across restarts, null to not filter them
+	 *                           (default)
+	 */
+	public void setUpdateDeduplicator(UpdateDeduplicator updateDeduplicator) {
+		this.updateDeduplicator = updateDeduplicator;
+	}
+
+	public UpdateDeadlines getUpdateDeadlines() {
+		return updateDeadlines;
+	}
+
+	/**
+	 * Enables handing updates with a deadline, like callback and pre checkout
+	 * queries, to the bot before ordinary ones. Ordinary updates are then
+	 * handed one by one, so the ones with a deadline don't wait for a whole
+	 * batch (see {@link UpdateDeadlines})
+	 *
+	 * @param updateDeadlines Deadlines of the updates, null to handle all of
+	 *                        them in order (default)
+	 */
+	public void setUpdateDeadlines(UpdateDeadlines updateDeadlines) {
+		this.updateDeadlines = updateDeadlines;
+	}
+
+	public LoadShedder getLoadShedder() {
+		return loadShedder;
+	}
+
+	/**
+	 * Enables dropping low value updates, like edited messages or group
+	 * chatter, when the bot falls behind (see {@link LoadShedder})
+	 *
+	 * @param loadShedder Policy of the updates to drop, null to handle all of
+	 *                    them (default)
+	 */
+	public void setLoadShedder(LoadShedder loadShedder) {
+		this.loadShedder = loadShedder;
+	}
+
+	public FloodGuard getFloodGuard() {
+		return floodGuard;
+	}
+
+	/**
+	 * Enables limiting the updates handed to the bot per user or per chat.
+	 * Updates over the limit are delayed or dropped right before being handed,
+	 * except payments and updates with a deadline (see {@link FloodGuard})
+	 *
+	 * @param floodGuard Limit of the updates, null to not limit them (default)
+	 */
+	public void setFloodGuard(FloodGuard floodGuard) {
+		this.floodGuard = floodGuard;
+	}
+
+	/**
+	 * @return Priority of a method, {@link Priority#NORMAL} unless set for its
+	 *         class
+	 */
+	public Priority getPriority(PartialBotApiMethod<?> method) {
+		return methodPriorities.getOrDefault(method.getClass(), Priority.NORMAL);
+	}
+
+	/**
+	 * Sets the priority of a class of methods when the sender picks the next
+	 * request to send. Answers to callback, inline, shipping and pre checkout
+	 * queries and chat actions are {@link Priority#INTERACTIVE} by default
+	 *
+	 * @param methodClass Class of the methods
+	 * @param priority    Priority of the methods
+	 */
+	public void setMethodPriority(Class<? extends PartialBotApiMethod<?>> methodClass, Priority priority) {
+		methodPriorities.put(methodClass, priority);
+	}
+
+	public int getSenderThreads() {
+		return senderThreads;
+	}
+
+	/**
+	 * Sets the number of threads of the sender sending asynchronous methods.
+	 * With more than one, methods may be sent out of order and one of them is
+	 * kept for interactive methods
+	 *
+	 * @param senderThreads Number of threads, 1 by default
+	 */
+	public void setSenderThreads(int senderThreads) {
+		this.senderThreads = senderThreads;
+	}
+
+	public PriorityRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * Limits the requests sent per second. When requests wait for the limiter,
+	 * the ones of higher priority are sent first
+	 *
+	 * @param rateLimiter Limiter of the requests, null to not limit them
+	 *                    (default)
+	 */
+	public void setRateLimiter(PriorityRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * @return Guard of the base url shared by all the bots sending to it, null
+	 *         if requests are not guarded
+	 */
+	public EndpointGuard getEndpointGuard() {
+		return endpointGuarded ? EndpointGuard.forBaseUrl(baseUrl) : null;
+	}
+
+	/**
+	 * Enables sending the requests of the sender through the guard of the base
+	 * url, which limits the requests in flight and fails them fast while the
+	 * server is down (see {@link EndpointGuard}). Long polling for updates is
+	 * not guarded
+	 *
+	 * @param endpointGuarded True to guard the requests, false to not (default)
+	 */
+	public void setEndpointGuarded(boolean endpointGuarded) {
+		this.endpointGuarded = endpointGuarded;
+	}
+
+	/**
+	 * Gets the timer shared by the session and the sender of the bot, created
+	 * on first use. Its thread is a daemon and is started when the first task
+	 * is scheduled.
+	 *
+	 * @return Timer of the bot
+	 */
+	public synchronized HashedWheelTimer getTimer() {
+		if (timer == null) {
+			timer = new HashedWheelTimer("Telegram Timer");
+			ownTimer = true;
+		}
+		return timer;
+	}
+
+	/**
+	 * Stops the timer created by these options, if any, dropping its pending
+	 * tasks. A timer set with {@link #setTimer(HashedWheelTimer)} is left
+	 * running, as it may be shared. Called when the bot closes.
+	 */
+	public synchronized void stopTimer() {
+		if (timer != null && ownTimer) {
+			timer.stop();
+			timer = null;
+			ownTimer = false;
+		}
+	}
+
+	/**
+	 * Sets the timer shared by the session and the sender of the bot, for
+	 * example to share one between several bots
+	 *
+	 * @param timer Timer to use
+	 */
+	public synchronized void setTimer(HashedWheelTimer timer) {
+		this.timer = timer;
+		this.ownTimer = false;
+	}
+}
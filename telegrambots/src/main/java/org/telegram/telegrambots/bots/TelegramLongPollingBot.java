@@ -16,12 +16,21 @@ public abstract class TelegramLongPollingBot extends DefaultAbsSender implements
 		this(ApiContext.getInstance(HttpClient.class));
 	}
 
+	public TelegramLongPollingBot(DefaultBotOptions options) {
+		this(ApiContext.getInstance(HttpClient.class), options);
+	}
+
 	public TelegramLongPollingBot(HttpClient httpclient) {
 		super(httpclient);
 	}
 
+	public TelegramLongPollingBot(HttpClient httpclient, DefaultBotOptions options) {
+		super(httpclient, options);
+	}
+
 	@Override
 	public void onClosing() {
 		exe.shutdown();
+		getOptions().stopTimer();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package org.telegram.telegrambots.bots;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.telegram.telegrambots.commands.CommandHandler;
+import org.telegram.telegrambots.commands.CommandRouter;
+import org.telegram.telegrambots.meta.ApiContext;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * @author agent
+ * @version 1.0 Long polling bot that dispatches the commands it receives to
+ *          their registered handlers. Any other update, including commands
+ *          addressed to other bots, goes to
+ *          {@link #processNonCommandUpdate(Update)}
+ */
+public abstract class TelegramLongPollingCommandBot extends TelegramLongPollingBot {
+	private final CommandRouter commandRouter = new CommandRouter(this::getBotUsername);
+
+	public TelegramLongPollingCommandBot() {
+		this(ApiContext.getInstance(HttpClient.class));
+	}
+
+	public TelegramLongPollingCommandBot(DefaultBotOptions options) {
+		this(ApiContext.getInstance(HttpClient.class), options);
+	}
+
+	public TelegramLongPollingCommandBot(HttpClient httpclient) {
+		super(httpclient);
+	}
+
+	public TelegramLongPollingCommandBot(HttpClient httpclient, DefaultBotOptions options) {
+		super(httpclient, options);
+	}
+
+	@Override
+	public final void onUpdateReceived(Update update) {
+		if (update.hasMessage() && commandRouter.route(update.getMessage())) {
+			return;
+		}
+		processNonCommandUpdate(update);
+	}
+
+	/**
+	 * Registers a command
+	 *
+	 * @param command Command name, with or without the leading slash
+	 * @param handler Handler of the command
+	 * @return True if it was registered, false if the command already had a
+	 *         handler
+	 */
+	public final boolean register(String command, CommandHandler handler) {
+		return commandRouter.register(command, handler);
+	}
+
+	/**
+	 * Removes a command
+	 *
+	 * @param command Command name, with or without the leading slash
+	 * @return True if it was removed, false if it wasn't registered
+	 */
+	public final boolean deregister(String command) {
+		return commandRouter.deregister(command);
+	}
+
+	/**
+	 * Sets the handler for commands that are not registered
+	 *
+	 * @param defaultHandler Handler of unknown commands, null to send them to
+	 *                       {@link #processNonCommandUpdate(Update)}
+	 */
+	public final void registerDefaultAction(CommandHandler defaultHandler) {
+		commandRouter.setDefaultHandler(defaultHandler);
+	}
+
+	protected final CommandRouter getCommandRouter() {
+		return commandRouter;
+	}
+
+	/**
+	 * Process all updates that are not commands handled by this bot
+	 *
+	 * @param update Update received
+	 */
+	public abstract void processNonCommandUpdate(Update update);
+}
@@ -0,0 +1,124 @@
+package org.telegram.telegrambots.callbacks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * @author agent
+ * @version 1.0 Reads the fields of a callback data written by a
+ *          {@link CallbackDataWriter}, in the same order they were written.
+ *
+ *          The fields are only decoded when the first one is read. Data comes
+ *          from the client and may have been forged, so malformed fields throw
+ *          an IllegalArgumentException.
+ */
+public final class CallbackDataReader {
+	private static final byte[] EMPTY = new byte[0];
+
+	private final String data;
+	private final int separator;
+	private byte[] payload;
+	private int position;
+
+	private CallbackDataReader(String data, int separator) {
+		this.data = data;
+		this.separator = separator;
+	}
+
+	/**
+	 * @param data Data of a callback query
+	 * @return Reader of the data
+	 */
+	public static CallbackDataReader of(String data) {
+		if (data == null) {
+			throw new IllegalArgumentException("Callback data can't be null");
+		}
+		return new CallbackDataReader(data, data.indexOf(CallbackDataWriter.SEPARATOR));
+	}
+
+	/**
+	 * @return Action of the data
+	 */
+	public String getAction() {
+		return separator < 0 ? data : data.substring(0, separator);
+	}
+
+	/**
+	 * @return Raw callback data
+	 */
+	public String getData() {
+		return data;
+	}
+
+	public boolean hasRemaining() {
+		return position < getPayload().length;
+	}
+
+	public long getLong() {
+		byte[] bytes = getPayload();
+		long zigzag = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (position >= bytes.length) {
+				throw new IllegalArgumentException("Truncated callback data: " + data);
+			}
+			byte b = bytes[position++];
+			zigzag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IllegalArgumentException("Malformed number in callback data: " + data);
+	}
+
+	public int getInt() {
+		long value = getLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Number out of range in callback data: " + data);
+		}
+		return (int) value;
+	}
+
+	public boolean getBoolean() {
+		byte[] bytes = getPayload();
+		if (position >= bytes.length) {
+			throw new IllegalArgumentException("Truncated callback data: " + data);
+		}
+		return bytes[position++] != 0;
+	}
+
+	public <E extends Enum<E>> E getEnum(Class<E> type) {
+		long ordinal = getLong();
+		E[] constants = type.getEnumConstants();
+		if (ordinal < 0 || ordinal >= constants.length) {
+			throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " in callback data: " + data);
+		}
+		return constants[(int) ordinal];
+	}
+
+	public String getString() {
+		int length = getInt();
+		byte[] bytes = getPayload();
+		if (length < 0 || length > bytes.length - position) {
+			throw new IllegalArgumentException("Truncated callback data: " + data);
+		}
+		String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	private byte[] getPayload() {
+		if (payload == null) {
+			if (separator < 0) {
+				payload = EMPTY;
+			} else {
+				payload = Base64.getUrlDecoder().decode(data.substring(separator + 1));
+			}
+		}
+		return payload;
+	}
+
+	@Override
+	public String toString() {
+		return "CallbackDataReader{" + "data='" + data + '\'' + '}';
+	}
+}
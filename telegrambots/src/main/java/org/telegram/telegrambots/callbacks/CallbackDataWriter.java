@@ -0,0 +1,131 @@
+package org.telegram.telegrambots.callbacks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * @author agent
+ * @version 1.0 Packs an action and typed fields into the data of an inline
+ *          keyboard button, so the state needed to handle the press travels
+ *          with the button instead of being stored by the bot.
+ *
+ *          The data is the action, a colon and the fields in binary form
+ *          (zigzag varints, enum ordinals, length prefixed strings) encoded as
+ *          base64url without padding. Fields must be read back by a
+ *          {@link CallbackDataReader} in the same order they were written.
+ *          <pre>
+ * String data = new CallbackDataWriter("page").putLong(chatId).putInt(3).build();
+ *          </pre>
+ */
+public final class CallbackDataWriter {
+	/**
+	 * Maximum length in bytes of the data of a button allowed by Telegram
+	 */
+	public static final int MAX_DATA_LENGTH = 64;
+	/**
+	 * Separator between the action and the fields
+	 */
+	static final char SEPARATOR = ':';
+
+	private final String action;
+	private byte[] buffer = new byte[16];
+	private int size;
+
+	/**
+	 * @param action Action of the button, used to route the callback query.
+	 *               Only letters, digits, '_' and '-' are allowed
+	 */
+	public CallbackDataWriter(String action) {
+		if (action == null || action.isEmpty()) {
+			throw new IllegalArgumentException("Action can't be empty");
+		}
+		for (int i = 0; i < action.length(); i++) {
+			char c = action.charAt(i);
+			if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '_'
+					&& c != '-') {
+				throw new IllegalArgumentException("Invalid character '" + c + "' in action " + action);
+			}
+		}
+		this.action = action;
+	}
+
+	public CallbackDataWriter putLong(long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			putByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		putByte((int) zigzag);
+		return this;
+	}
+
+	public CallbackDataWriter putInt(int value) {
+		return putLong(value);
+	}
+
+	public CallbackDataWriter putBoolean(boolean value) {
+		putByte(value ? 1 : 0);
+		return this;
+	}
+
+	/**
+	 * Writes an enum by its ordinal, so constants must not be reordered while
+	 * buttons using them may still be pressed
+	 */
+	public CallbackDataWriter putEnum(Enum<?> value) {
+		return putLong(value.ordinal());
+	}
+
+	/**
+	 * Writes a string. Long strings quickly exhaust the 64 bytes available, so
+	 * prefer ids.
+	 */
+	public CallbackDataWriter putString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putLong(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+		return this;
+	}
+
+	/**
+	 * Builds the data of the button
+	 *
+	 * @return Encoded data
+	 * @throws IllegalStateException If the data is longer than
+	 *                               {@link #MAX_DATA_LENGTH} bytes
+	 */
+	public String build() {
+		String data;
+		if (size == 0) {
+			data = action;
+		} else {
+			data = action + SEPARATOR
+					+ Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer, size));
+		}
+		// Everything is ascii, so the length in chars is the length in bytes
+		if (data.length() > MAX_DATA_LENGTH) {
+			throw new IllegalStateException(
+					"Callback data of " + data.length() + " bytes exceeds " + MAX_DATA_LENGTH + " bytes: " + data);
+		}
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return build();
+	}
+
+	private void putByte(int value) {
+		ensureCapacity(1);
+		buffer[size++] = (byte) value;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package org.telegram.telegrambots.callbacks;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+
+/**
+ * @author agent
+ * @version 1.0 Callback to handle the callback queries of an action
+ */
+@FunctionalInterface
+public interface CallbackQueryHandler {
+	/**
+	 * Called when a button of the action is pressed
+	 *
+	 * @param callbackQuery Callback query received
+	 * @param data          Reader of the fields of the callback data
+	 */
+	void execute(CallbackQuery callbackQuery, CallbackDataReader data);
+}
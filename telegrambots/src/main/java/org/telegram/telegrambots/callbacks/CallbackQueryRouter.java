@@ -0,0 +1,75 @@
+package org.telegram.telegrambots.callbacks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+
+/**
+ * @author agent
+ * @version 1.0 Dispatches callback queries to a handler by the action of
+ *          their data (see {@link CallbackDataWriter}). Only the action is
+ *          looked at to route a query, the fields are decoded by the handler
+ *          if it reads them.
+ */
+public class CallbackQueryRouter {
+	private final Map<String, CallbackQueryHandler> handlers = new ConcurrentHashMap<>();
+	private volatile CallbackQueryHandler defaultHandler;
+
+	/**
+	 * Registers the handler of an action
+	 *
+	 * @param action  Action of the buttons
+	 * @param handler Handler of the action
+	 * @return True if it was registered, false if the action already had a
+	 *         handler
+	 */
+	public boolean register(String action, CallbackQueryHandler handler) {
+		if (action == null || handler == null) {
+			throw new IllegalArgumentException("Action and handler can't be null");
+		}
+		return handlers.putIfAbsent(action, handler) == null;
+	}
+
+	/**
+	 * Removes the handler of an action
+	 *
+	 * @param action Action of the buttons
+	 * @return True if it was removed, false if it wasn't registered
+	 */
+	public boolean deregister(String action) {
+		return handlers.remove(action) != null;
+	}
+
+	/**
+	 * Sets the handler for callback queries whose action is not registered
+	 *
+	 * @param defaultHandler Handler of unknown actions, null to ignore them
+	 *                       (default)
+	 */
+	public void setDefaultHandler(CallbackQueryHandler defaultHandler) {
+		this.defaultHandler = defaultHandler;
+	}
+
+	/**
+	 * Routes a callback query to the handler of its action
+	 *
+	 * @param callbackQuery Callback query received
+	 * @return True if it was handled, false if it has no data or no handler
+	 */
+	public boolean route(CallbackQuery callbackQuery) {
+		if (callbackQuery == null || callbackQuery.getData() == null) {
+			return false;
+		}
+		CallbackDataReader data = CallbackDataReader.of(callbackQuery.getData());
+		CallbackQueryHandler handler = handlers.get(data.getAction());
+		if (handler == null) {
+			handler = defaultHandler;
+			if (handler == null) {
+				return false;
+			}
+		}
+		handler.execute(callbackQuery, data);
+		return true;
+	}
+}
@@ -0,0 +1,293 @@
+package org.telegram.telegrambots.collections;
+
+import java.util.Arrays;
+
+/**
+ * @author agent
+ * @version 1.0 Open addressing hash map with primitive long keys, like chat
+ *          or user ids, that doesn't box them nor allocate a node per entry.
+ *
+ *          Every entry can also hold a long stamp (an expiration time, a last
+ *          seen time...) stored in a parallel array. Collisions are solved by
+ *          linear probing and removals shift the following entries back, so
+ *          there are no tombstones. Not thread safe.
+ *
+ * @param <V> Type of the values
+ */
+public class LongObjectHashMap<V> {
+	private static final long EMPTY = 0;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private Object[] values;
+	private long[] stamps;
+	private int size;
+	private int mask;
+	private int resizeAt;
+
+	// The key 0 marks empty slots, so its entry is kept apart
+	private boolean hasZeroKey;
+	private Object zeroValue;
+	private long zeroStamp;
+
+	public LongObjectHashMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize Number of entries expected, to size the table
+	 */
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = 2;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(long key) {
+		return key == EMPTY ? hasZeroKey : find(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if (key == EMPTY) {
+			return hasZeroKey ? (V) zeroValue : null;
+		}
+		int slot = find(key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * @return Stamp of the entry, 0 if there is no entry for the key
+	 */
+	public long getStamp(long key) {
+		if (key == EMPTY) {
+			return hasZeroKey ? zeroStamp : 0;
+		}
+		int slot = find(key);
+		return slot < 0 ? 0 : stamps[slot];
+	}
+
+	public V put(long key, V value) {
+		return put(key, value, 0);
+	}
+
+	/**
+	 * Associates a value and a stamp to a key
+	 *
+	 * @return Previous value, null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value, long stamp) {
+		if (key == EMPTY) {
+			V previous = (V) zeroValue;
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroValue = value;
+			zeroStamp = stamp;
+			return previous;
+		}
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				stamps[slot] = stamp;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		stamps[slot] = stamp;
+		if (++size >= resizeAt) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Changes the stamp of an entry
+	 *
+	 * @return True if the entry exists
+	 */
+	public boolean setStamp(long key, long stamp) {
+		if (key == EMPTY) {
+			if (hasZeroKey) {
+				zeroStamp = stamp;
+			}
+			return hasZeroKey;
+		}
+		int slot = find(key);
+		if (slot < 0) {
+			return false;
+		}
+		stamps[slot] = stamp;
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == EMPTY) {
+			if (!hasZeroKey) {
+				return null;
+			}
+			V previous = (V) zeroValue;
+			hasZeroKey = false;
+			zeroValue = null;
+			zeroStamp = 0;
+			size--;
+			return previous;
+		}
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		V previous = (V) values[slot];
+		removeSlot(slot);
+		return previous;
+	}
+
+	/**
+	 * Removes the entries matching a condition
+	 *
+	 * @param filter Condition on the key, value and stamp of the entries
+	 * @return Number of entries removed
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeIf(EntryFilter<? super V> filter) {
+		int removed = 0;
+		if (hasZeroKey && filter.test(EMPTY, (V) zeroValue, zeroStamp)) {
+			remove(EMPTY);
+			removed++;
+		}
+		// Backwards from an empty slot, so shifted entries are never skipped
+		int start = 0;
+		while (keys[start] != EMPTY) {
+			start++;
+		}
+		int slot = start;
+		do {
+			slot = (slot - 1) & mask;
+			if (keys[slot] != EMPTY && filter.test(keys[slot], (V) values[slot], stamps[slot])) {
+				removeSlot(slot);
+				removed++;
+			}
+		} while (slot != start);
+		return removed;
+	}
+
+	/**
+	 * Calls the visitor with every entry
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryVisitor<? super V> visitor) {
+		if (hasZeroKey) {
+			visitor.visit(EMPTY, (V) zeroValue, zeroStamp);
+		}
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != EMPTY) {
+				visitor.visit(keys[slot], (V) values[slot], stamps[slot]);
+			}
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		hasZeroKey = false;
+		zeroValue = null;
+		size = 0;
+	}
+
+	private int find(long key) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(long key) {
+		// Spread consecutive ids over the table
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void removeSlot(int slot) {
+		size--;
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (keys[next] != EMPTY) {
+			int ideal = slot(keys[next]);
+			// Move the entry back if the gap is between its ideal slot and itself
+			if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				stamps[gap] = stamps[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = EMPTY;
+		values[gap] = null;
+		stamps[gap] = 0;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		stamps = new long[capacity];
+		mask = capacity - 1;
+		resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		long[] oldStamps = stamps;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != EMPTY) {
+				int slot = slot(key);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+				stamps[slot] = oldStamps[i];
+			}
+		}
+	}
+
+	/**
+	 * Condition on an entry of the map
+	 */
+	@FunctionalInterface
+	public interface EntryFilter<V> {
+		boolean test(long key, V value, long stamp);
+	}
+
+	/**
+	 * Visitor of the entries of the map
+	 */
+	@FunctionalInterface
+	public interface EntryVisitor<V> {
+		void visit(long key, V value, long stamp);
+	}
+}
@@ -0,0 +1,106 @@
+package org.telegram.telegrambots.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author agent
+ * @version 1.0 Command name and arguments of a message. Nothing is cut from
+ *          the message text until it is asked for, so handlers that don't
+ *          read their arguments don't pay for them.
+ */
+public final class CommandArguments {
+	private static final String[] EMPTY = new String[0];
+
+	private final String text;
+	private final int commandEnd;
+	private final int argumentsStart;
+
+	private String command;
+	private String[] arguments;
+
+	CommandArguments(String text, int commandEnd, int argumentsStart) {
+		this.text = text;
+		this.commandEnd = commandEnd;
+		this.argumentsStart = argumentsStart;
+	}
+
+	/**
+	 * @return Name of the command, without the leading slash and the bot
+	 *         username
+	 */
+	public String getCommand() {
+		if (command == null) {
+			command = text.substring(1, commandEnd);
+		}
+		return command;
+	}
+
+	/**
+	 * @return Text after the command, trimmed. Empty if there are no arguments
+	 */
+	public String getText() {
+		return text.substring(argumentsStart).trim();
+	}
+
+	/**
+	 * @return Number of arguments, separated by whitespaces
+	 */
+	public int size() {
+		return getArguments().length;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @param index Position of the argument
+	 * @return Argument at that position
+	 * @throws IndexOutOfBoundsException If there are not so many arguments
+	 */
+	public String get(int index) {
+		String[] split = getArguments();
+		if (index < 0 || index >= split.length) {
+			throw new IndexOutOfBoundsException("Argument " + index + " of " + split.length);
+		}
+		return split[index];
+	}
+
+	/**
+	 * @return Copy of the arguments, separated by whitespaces
+	 */
+	public String[] toArray() {
+		return getArguments().clone();
+	}
+
+	private String[] getArguments() {
+		if (arguments == null) {
+			List<String> split = null;
+			int length = text.length();
+			int i = argumentsStart;
+			while (i < length) {
+				while (i < length && Character.isWhitespace(text.charAt(i))) {
+					i++;
+				}
+				int start = i;
+				while (i < length && !Character.isWhitespace(text.charAt(i))) {
+					i++;
+				}
+				if (i > start) {
+					if (split == null) {
+						split = new ArrayList<>();
+					}
+					split.add(text.substring(start, i));
+				}
+			}
+			arguments = split == null ? EMPTY : split.toArray(EMPTY);
+		}
+		return arguments;
+	}
+
+	@Override
+	public String toString() {
+		return "CommandArguments{" + "command='" + getCommand() + '\'' + ", text='" + getText() + '\'' + '}';
+	}
+}
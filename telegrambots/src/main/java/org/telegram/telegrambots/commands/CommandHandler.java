@@ -0,0 +1,18 @@
+package org.telegram.telegrambots.commands;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * @author agent
+ * @version 1.0 Callback to handle a bot command
+ */
+@FunctionalInterface
+public interface CommandHandler {
+	/**
+	 * Called when a message starts with the command
+	 *
+	 * @param message   Message containing the command
+	 * @param arguments Command name and arguments, parsed on demand
+	 */
+	void execute(Message message, CommandArguments arguments);
+}
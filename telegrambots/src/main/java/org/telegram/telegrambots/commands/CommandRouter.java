@@ -0,0 +1,214 @@
+package org.telegram.telegrambots.commands;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * @author agent
+ * @version 1.0 Dispatches bot commands to their handlers.
+ *
+ *          Registered commands are compiled into a trie, so a message is
+ *          routed walking its command once, character by character, without
+ *          splitting the text nor using regular expressions. Commands are case
+ *          insensitive. A command addressed to another bot (/command@otherbot)
+ *          is not routed; one addressed to this bot is routed as if the
+ *          username wasn't there.
+ *
+ *          Commands must be registered before messages start being routed.
+ */
+public class CommandRouter {
+	/**
+	 * Maximum length of a command allowed by Telegram
+	 */
+	public static final int MAX_COMMAND_LENGTH = 32;
+
+	private final Supplier<String> botUsername;
+	private final Node root = new Node();
+	private CommandHandler defaultHandler;
+
+	/**
+	 * @param botUsername Username of the bot, to recognize /command@username
+	 */
+	public CommandRouter(String botUsername) {
+		this(() -> botUsername);
+	}
+
+	/**
+	 * @param botUsername Supplier of the username of the bot, to recognize
+	 *                    /command@username
+	 */
+	public CommandRouter(Supplier<String> botUsername) {
+		this.botUsername = botUsername;
+	}
+
+	/**
+	 * Registers a command
+	 *
+	 * @param command Command name, with or without the leading slash. Only
+	 *                letters, digits and underscores are allowed
+	 * @param handler Handler of the command
+	 * @return True if it was registered, false if the command already had a
+	 *         handler
+	 */
+	public synchronized boolean register(String command, CommandHandler handler) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Handler can't be null");
+		}
+		Node node = root;
+		for (char c : normalize(command).toCharArray()) {
+			node = node.getOrAddChild(c);
+		}
+		if (node.handler != null) {
+			return false;
+		}
+		node.handler = handler;
+		return true;
+	}
+
+	/**
+	 * Removes a command
+	 *
+	 * @param command Command name, with or without the leading slash
+	 * @return True if it was removed, false if it wasn't registered
+	 */
+	public synchronized boolean deregister(String command) {
+		Node node = root;
+		for (char c : normalize(command).toCharArray()) {
+			node = node.getChild(c);
+			if (node == null) {
+				return false;
+			}
+		}
+		if (node.handler == null) {
+			return false;
+		}
+		node.handler = null;
+		return true;
+	}
+
+	/**
+	 * Sets the handler for commands addressed to this bot that are not
+	 * registered
+	 *
+	 * @param defaultHandler Handler of unknown commands, null to ignore them
+	 *                       (default)
+	 */
+	public void setDefaultHandler(CommandHandler defaultHandler) {
+		this.defaultHandler = defaultHandler;
+	}
+
+	/**
+	 * Routes a message to the handler of its command
+	 *
+	 * @param message Message received
+	 * @return True if the message was a command handled by this router, false
+	 *         otherwise
+	 */
+	public boolean route(Message message) {
+		if (message == null || !message.hasText()) {
+			return false;
+		}
+		String text = message.getText();
+		if (text.charAt(0) != '/') {
+			return false;
+		}
+
+		int length = text.length();
+		int i = 1;
+		Node node = root;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (c == '@' || Character.isWhitespace(c)) {
+				break;
+			}
+			if (node != null) {
+				node = node.getChild(Character.toLowerCase(c));
+			}
+			i++;
+		}
+		int commandEnd = i;
+		if (commandEnd == 1) {
+			return false;
+		}
+
+		if (i < length && text.charAt(i) == '@') {
+			int usernameStart = ++i;
+			while (i < length && !Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			String username = botUsername.get();
+			if (username == null || username.length() != i - usernameStart
+					|| !text.regionMatches(true, usernameStart, username, 0, username.length())) {
+				return false;
+			}
+		}
+
+		CommandHandler handler = node == null ? null : node.handler;
+		if (handler == null) {
+			handler = defaultHandler;
+			if (handler == null) {
+				return false;
+			}
+		}
+		handler.execute(message, new CommandArguments(text, commandEnd, i));
+		return true;
+	}
+
+	private static String normalize(String command) {
+		if (command == null) {
+			throw new IllegalArgumentException("Command can't be null");
+		}
+		String name = command.startsWith("/") ? command.substring(1) : command;
+		if (name.isEmpty() || name.length() > MAX_COMMAND_LENGTH) {
+			throw new IllegalArgumentException("Command must have between 1 and " + MAX_COMMAND_LENGTH + " characters");
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_') {
+				throw new IllegalArgumentException("Invalid character '" + c + "' in command " + command);
+			}
+		}
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Node of the trie. Commands use a small alphabet, so children are kept in
+	 * two parallel arrays searched linearly.
+	 */
+	private static final class Node {
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private char[] keys = NO_KEYS;
+		private Node[] children = NO_CHILDREN;
+		private CommandHandler handler;
+
+		private Node getChild(char c) {
+			char[] currentKeys = keys;
+			for (int i = 0; i < currentKeys.length; i++) {
+				if (currentKeys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node getOrAddChild(char c) {
+			Node child = getChild(c);
+			if (child == null) {
+				child = new Node();
+				int size = keys.length;
+				Node[] newChildren = Arrays.copyOf(children, size + 1);
+				newChildren[size] = child;
+				char[] newKeys = Arrays.copyOf(keys, size + 1);
+				newKeys[size] = c;
+				children = newChildren;
+				keys = newKeys;
+			}
+			return child;
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package org.telegram.telegrambots.downloads;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Downloads of files sent to the bot, kept in a size bounded
+ *          directory keyed by file_id.
+ *
+ *          Downloads run in a pool of a few threads. Concurrent downloads of
+ *          the same file share one transfer, and files already in the
+ *          directory are not downloaded again; when it exceeds its size, the
+ *          files used longest ago are deleted. The paths returned by GetFile
+ *          are remembered while they are valid, and interrupted transfers are
+ *          resumed where they stopped with an HTTP Range request.
+ *
+ *          Files returned may be deleted by later downloads, so they should be
+ *          read or copied right away.
+ */
+public class DownloadManager implements Closeable {
+	private static final String LOGTAG = "DOWNLOADMANAGER";
+	private static final String PART_SUFFIX = ".part";
+	private static final long FILE_PATH_TTL_MILLIS = TimeUnit.MINUTES.toMillis(55);
+	private static final long STALE_PART_MILLIS = TimeUnit.DAYS.toMillis(1);
+	private static final int MAX_ATTEMPTS = 3;
+	private static final int TIMEOUT_MILLIS = 75 * 1000;
+	private static final int MAX_FILE_PATHS = 4096;
+
+	private final DefaultAbsSender sender;
+	private final File directory;
+	private final long maxCacheBytes;
+	private final ExecutorService executor;
+	private final Map<String, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+	private final Map<String, FilePath> filePaths = new ConcurrentHashMap<>();
+	// Files of the directory by file_id, in access order, and their sizes
+	private final LinkedHashMap<String, Long> cached = new LinkedHashMap<>(64, 0.75f, true);
+	private long cachedBytes;
+	private volatile boolean closed;
+
+	/**
+	 * @param sender           Sender of the bot, used to call GetFile
+	 * @param directory        Directory of the downloaded files, created if it
+	 *                         doesn't exist
+	 * @param maxCacheBytes    Maximum size of the files in the directory
+	 * @param maxParallel      Maximum number of files downloaded at the same
+	 *                         time
+	 * @throws IOException If the directory can't be created
+	 */
+	public DownloadManager(DefaultAbsSender sender, File directory, long maxCacheBytes, int maxParallel)
+			throws IOException {
+		this.sender = sender;
+		this.directory = directory;
+		this.maxCacheBytes = maxCacheBytes;
+		Files.createDirectories(directory.toPath());
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(maxParallel, runnable -> {
+			Thread thread = new Thread(runnable, "Telegram Download " + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		loadDirectory();
+	}
+
+	/**
+	 * Gets a file, downloading it if it is not in the directory yet
+	 *
+	 * @param fileId Id of the file
+	 * @return Future of the downloaded file, failed with a
+	 *         {@link TelegramApiException} if it can't be downloaded or the
+	 *         manager is closed
+	 * @throws IllegalArgumentException If the file id is not valid
+	 */
+	public CompletableFuture<File> download(String fileId) {
+		fileName(fileId);
+		if (closed) {
+			return closedFuture();
+		}
+		File cachedFile = getCached(fileId);
+		if (cachedFile != null) {
+			return CompletableFuture.completedFuture(cachedFile);
+		}
+		CompletableFuture<File> future = new CompletableFuture<>();
+		CompletableFuture<File> existing = downloads.putIfAbsent(fileId, future);
+		if (existing != null) {
+			return existing;
+		}
+		try {
+			execute(fileId, future);
+		} catch (RejectedExecutionException e) {
+			downloads.remove(fileId, future);
+			future.completeExceptionally(new TelegramApiException("Download manager is closed"));
+		}
+		return future;
+	}
+
+	private void execute(String fileId, CompletableFuture<File> future) {
+		executor.execute(() -> {
+			try {
+				future.complete(transfer(fileId));
+			} catch (TelegramApiException e) {
+				future.completeExceptionally(e);
+			} catch (IOException e) {
+				future.completeExceptionally(new TelegramApiRequestException("Error downloading the file", e));
+			} finally {
+				downloads.remove(fileId, future);
+			}
+		});
+	}
+
+	/**
+	 * Gets a file, downloading it if it is not in the directory yet. The path
+	 * of the file is used instead of calling GetFile
+	 *
+	 * @param file File returned by GetFile
+	 * @return Future of the downloaded file, failed with a
+	 *         {@link TelegramApiException} if it can't be downloaded
+	 */
+	public CompletableFuture<File> download(org.telegram.telegrambots.meta.api.objects.File file) {
+		if (file.getFilePath() != null) {
+			filePaths.put(file.getFileId(), new FilePath(file.getFilePath()));
+		}
+		return download(file.getFileId());
+	}
+
+	/**
+	 * @return True if the file is in the directory
+	 */
+	public synchronized boolean isCached(String fileId) {
+		return cached.containsKey(fileId);
+	}
+
+	/**
+	 * @return Size of the files in the directory
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * Deletes a file from the directory
+	 *
+	 * @return True if it was there
+	 */
+	public synchronized boolean evict(String fileId) {
+		Long size = cached.remove(fileId);
+		if (size == null) {
+			return false;
+		}
+		cachedBytes -= size;
+		delete(fileFor(fileId));
+		return true;
+	}
+
+	/**
+	 * Stops the downloads pool. Downloads in progress are interrupted and will
+	 * be resumed by the next manager using the directory. Their futures and
+	 * the ones of the downloads queued fail, like the downloads requested
+	 * after closing it
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+		for (Map.Entry<String, CompletableFuture<File>> download : downloads.entrySet()) {
+			download.getValue().completeExceptionally(new TelegramApiException("Download manager is closed"));
+			downloads.remove(download.getKey(), download.getValue());
+		}
+	}
+
+	private static CompletableFuture<File> closedFuture() {
+		CompletableFuture<File> future = new CompletableFuture<>();
+		future.completeExceptionally(new TelegramApiException("Download manager is closed"));
+		return future;
+	}
+
+	private synchronized File getCached(String fileId) {
+		if (cached.get(fileId) == null) {
+			return null;
+		}
+		File file = fileFor(fileId);
+		// Keeps the order of use between restarts
+		file.setLastModified(System.currentTimeMillis());
+		return file;
+	}
+
+	private File transfer(String fileId) throws TelegramApiException, IOException {
+		File part = new File(directory, fileName(fileId) + PART_SUFFIX);
+		IOException last = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); attempt++) {
+			String url = org.telegram.telegrambots.meta.api.objects.File.getFileUrl(sender.getBotToken(),
+					getFilePath(fileId));
+			try {
+				if (copy(url, part)) {
+					return store(fileId, part);
+				}
+				// The file path expired
+				filePaths.remove(fileId);
+			} catch (IOException e) {
+				last = withoutToken(e);
+				BotLogger.warn(LOGTAG, "Download of " + fileId + " interrupted, resuming: " + last.getMessage());
+			}
+		}
+		throw last != null ? last : new IOException("Unable to download " + fileId);
+	}
+
+	/**
+	 * Copies the content of the url to the file, resuming from its current
+	 * length
+	 *
+	 * @return False if the url is not found
+	 */
+	private boolean copy(String url, File part) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+		long offset = part.length();
+		if (offset > 0) {
+			connection.setRequestProperty("Range", "bytes=" + offset + "-");
+		}
+		try {
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+				return false;
+			}
+			if (status == 416) {
+				// Nothing left to resume, or the part is not of this file
+				delete(part);
+				throw new IOException("Unable to resume " + part.getName());
+			}
+			if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL) {
+				throw new IOException("Unexpected status " + status);
+			}
+			boolean append = status == HttpURLConnection.HTTP_PARTIAL;
+			try (InputStream in = connection.getInputStream();
+					OutputStream out = new FileOutputStream(part, append)) {
+				byte[] buffer = new byte[64 * 1024];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			}
+			long expected = connection.getContentLengthLong();
+			if (expected >= 0 && part.length() != (append ? offset : 0) + expected) {
+				throw new IOException("Transfer ended after " + part.length() + " bytes");
+			}
+			return true;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * File urls contain the token of the bot, so it is removed from the errors
+	 * that may include them before they are logged or returned
+	 */
+	private IOException withoutToken(IOException e) {
+		String token = sender.getBotToken();
+		String message = e.getMessage();
+		if (token == null || token.isEmpty() || message == null || !message.contains(token)) {
+			return e;
+		}
+		return new IOException(e.getClass().getSimpleName() + ": " + message.replace(token, "<token>"));
+	}
+
+	private String getFilePath(String fileId) throws TelegramApiException {
+		FilePath filePath = filePaths.get(fileId);
+		if (filePath != null && !filePath.isExpired(System.currentTimeMillis())) {
+			return filePath.path;
+		}
+		org.telegram.telegrambots.meta.api.objects.File file = sender.execute(new GetFile().setFileId(fileId));
+		if (file.getFilePath() == null) {
+			throw new TelegramApiException("File " + fileId + " can't be downloaded");
+		}
+		if (filePaths.size() >= MAX_FILE_PATHS) {
+			long now = System.currentTimeMillis();
+			filePaths.values().removeIf(path -> path.isExpired(now));
+		}
+		filePaths.put(fileId, new FilePath(file.getFilePath()));
+		return file.getFilePath();
+	}
+
+	private synchronized File store(String fileId, File part) throws IOException {
+		File file = fileFor(fileId);
+		Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Long previous = cached.put(fileId, file.length());
+		cachedBytes += file.length() - (previous == null ? 0 : previous);
+		// The file just stored is the last one, so it is never evicted here
+		for (Iterator<Map.Entry<String, Long>> it = cached.entrySet().iterator(); cachedBytes > maxCacheBytes
+				&& cached.size() > 1;) {
+			Map.Entry<String, Long> eldest = it.next();
+			it.remove();
+			cachedBytes -= eldest.getValue();
+			delete(fileFor(eldest.getKey()));
+		}
+		return file;
+	}
+
+	private synchronized void loadDirectory() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		long now = System.currentTimeMillis();
+		for (File file : files) {
+			if (!file.isFile()) {
+				continue;
+			}
+			if (file.getName().endsWith(PART_SUFFIX)) {
+				if (now - file.lastModified() > STALE_PART_MILLIS) {
+					delete(file);
+				}
+			} else {
+				cached.put(file.getName(), file.length());
+				cachedBytes += file.length();
+			}
+		}
+	}
+
+	private File fileFor(String fileId) {
+		return new File(directory, fileName(fileId));
+	}
+
+	/**
+	 * File ids are url safe base64, but are checked to never leave the
+	 * directory
+	 */
+	private static String fileName(String fileId) {
+		if (!fileId.matches("[A-Za-z0-9_-]+")) {
+			throw new IllegalArgumentException("Invalid file id " + fileId);
+		}
+		return fileId;
+	}
+
+	private static void delete(File file) {
+		if (file.exists() && !file.delete()) {
+			BotLogger.warn(LOGTAG, "Unable to delete " + file);
+		}
+	}
+
+	private static final class FilePath {
+		private final String path;
+		private final long expiresAt;
+
+		private FilePath(String path) {
+			this.path = path;
+			this.expiresAt = System.currentTimeMillis() + FILE_PATH_TTL_MILLIS;
+		}
+
+		private boolean isExpired(long now) {
+			return now > expiresAt;
+		}
+	}
+}
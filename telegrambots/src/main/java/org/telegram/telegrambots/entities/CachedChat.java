@@ -0,0 +1,105 @@
+package org.telegram.telegrambots.entities;
+
+import java.util.Objects;
+
+import org.telegram.telegrambots.meta.api.objects.Chat;
+
+/**
+ * @author agent
+ * @version 1.0 Snapshot of the fields of a chat that come with every message,
+ *          without the ones only returned by GetChat
+ */
+public class CachedChat {
+	public static final String PRIVATE = "private";
+	public static final String GROUP = "group";
+	public static final String SUPERGROUP = "supergroup";
+	public static final String CHANNEL = "channel";
+
+	private final long id;
+	private final String type;
+	private final String title;
+	private final String userName;
+	private final String firstName;
+	private final String lastName;
+
+	CachedChat(Chat chat) {
+		this.id = chat.getId();
+		this.type = typeOf(chat);
+		this.title = chat.getTitle();
+		this.userName = chat.getUserName();
+		this.firstName = chat.getFirstName();
+		this.lastName = chat.getLastName();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return One of {@link #PRIVATE}, {@link #GROUP}, {@link #SUPERGROUP} or
+	 *         {@link #CHANNEL}
+	 */
+	public String getType() {
+		return type;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getUserName() {
+		return userName;
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	public boolean isUserChat() {
+		return PRIVATE.equals(type);
+	}
+
+	public boolean isGroupChat() {
+		return GROUP.equals(type);
+	}
+
+	public boolean isSuperGroupChat() {
+		return SUPERGROUP.equals(type);
+	}
+
+	public boolean isChannelChat() {
+		return CHANNEL.equals(type);
+	}
+
+	/**
+	 * @return True if the chat has the same fields as this snapshot
+	 */
+	boolean matches(Chat chat) {
+		return Objects.equals(type, typeOf(chat)) && Objects.equals(title, chat.getTitle())
+				&& Objects.equals(userName, chat.getUserName()) && Objects.equals(firstName, chat.getFirstName())
+				&& Objects.equals(lastName, chat.getLastName());
+	}
+
+	private static String typeOf(Chat chat) {
+		if (chat.isUserChat()) {
+			return PRIVATE;
+		} else if (chat.isGroupChat()) {
+			return GROUP;
+		} else if (chat.isSuperGroupChat()) {
+			return SUPERGROUP;
+		} else if (chat.isChannelChat()) {
+			return CHANNEL;
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedChat{" + "id=" + id + ", type='" + type + '\'' + ", title='" + title + '\'' + ", userName='"
+				+ userName + '\'' + ", firstName='" + firstName + '\'' + ", lastName='" + lastName + '\'' + '}';
+	}
+}
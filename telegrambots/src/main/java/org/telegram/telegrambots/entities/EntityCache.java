@@ -0,0 +1,201 @@
+package org.telegram.telegrambots.entities;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.telegram.telegrambots.collections.LongObjectHashMap;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+/**
+ * @author agent
+ * @version 1.0 Cache of the users and chats seen in the updates received, so
+ *          handlers can read names, usernames and chat types without calling
+ *          GetChat or GetChatMember.
+ *
+ *          The session feeds it with every update it receives (see
+ *          {@link org.telegram.telegrambots.bots.DefaultBotOptions#setEntityCacheSize(int)}).
+ *          Each map keeps up to a maximum number of entries; when it is
+ *          exceeded, the ones seen longest ago are evicted.
+ */
+public class EntityCache {
+	private final int maxEntries;
+	private final LongObjectHashMap<User> users;
+	private final LongObjectHashMap<CachedChat> chats;
+
+	/**
+	 * @param maxEntries Maximum number of users, and of chats, to keep
+	 */
+	public EntityCache(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Max entries must be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.users = new LongObjectHashMap<>(Math.min(maxEntries, 1024));
+		this.chats = new LongObjectHashMap<>(Math.min(maxEntries, 1024));
+	}
+
+	/**
+	 * @param userId Id of the user
+	 * @return Last version of the user seen, null if it is not cached
+	 */
+	public synchronized User getUser(long userId) {
+		return users.get(userId);
+	}
+
+	/**
+	 * @param chatId Id of the chat
+	 * @return Last version of the chat seen, null if it is not cached
+	 */
+	public synchronized CachedChat getChat(long chatId) {
+		return chats.get(chatId);
+	}
+
+	/**
+	 * @return Time in milliseconds when the user was last seen, 0 if it is not
+	 *         cached
+	 */
+	public synchronized long getUserLastSeen(long userId) {
+		return users.getStamp(userId);
+	}
+
+	/**
+	 * @return Time in milliseconds when the chat was last seen, 0 if it is not
+	 *         cached
+	 */
+	public synchronized long getChatLastSeen(long chatId) {
+		return chats.getStamp(chatId);
+	}
+
+	public synchronized int getUserCount() {
+		return users.size();
+	}
+
+	public synchronized int getChatCount() {
+		return chats.size();
+	}
+
+	public synchronized void clear() {
+		users.clear();
+		chats.clear();
+	}
+
+	/**
+	 * Stores the users and chats of the updates
+	 *
+	 * @param updates Updates received
+	 */
+	public synchronized void observe(List<Update> updates) {
+		long now = System.currentTimeMillis();
+		for (Update update : updates) {
+			observe(update, now);
+		}
+		evictIfNeeded(users);
+		evictIfNeeded(chats);
+	}
+
+	private void observe(Update update, long now) {
+		if (update.hasMessage()) {
+			observe(update.getMessage(), now);
+		} else if (update.hasEditedMessage()) {
+			observe(update.getEditedMessage(), now);
+		} else if (update.hasChannelPost()) {
+			observe(update.getChannelPost(), now);
+		} else if (update.hasEditedChannelPost()) {
+			observe(update.getEditedChannelPost(), now);
+		} else if (update.hasCallbackQuery()) {
+			CallbackQuery callbackQuery = update.getCallbackQuery();
+			observe(callbackQuery.getFrom(), now);
+			observe(callbackQuery.getMessage(), now);
+		} else if (update.hasInlineQuery()) {
+			observe(update.getInlineQuery().getFrom(), now);
+		} else if (update.hasChosenInlineQuery()) {
+			observe(update.getChosenInlineQuery().getFrom(), now);
+		} else if (update.hasShippingQuery()) {
+			observe(update.getShippingQuery().getFrom(), now);
+		} else if (update.hasPreCheckoutQuery()) {
+			observe(update.getPreCheckoutQuery().getFrom(), now);
+		}
+	}
+
+	private void observe(Message message, long now) {
+		if (message == null) {
+			return;
+		}
+		observe(message.getFrom(), now);
+		observe(message.getChat(), now);
+		// Entities of forwarded and replied messages are older, don't refresh them
+		observeIfAbsent(message.getForwardFrom(), now);
+		Chat forwardFromChat = message.getForwardFromChat();
+		if (forwardFromChat != null && !chats.containsKey(forwardFromChat.getId())) {
+			observe(forwardFromChat, now);
+		}
+		if (message.getNewChatMembers() != null) {
+			for (User member : message.getNewChatMembers()) {
+				observe(member, now);
+			}
+		}
+		observe(message.getLeftChatMember(), now);
+		Message reply = message.getReplyToMessage();
+		if (reply != null) {
+			observeIfAbsent(reply.getFrom(), now);
+		}
+	}
+
+	private void observe(User user, long now) {
+		if (user == null || user.getId() == null) {
+			return;
+		}
+		User cached = users.get(user.getId());
+		if (user.equals(cached)) {
+			users.setStamp(user.getId(), now);
+		} else {
+			users.put(user.getId(), user, now);
+		}
+	}
+
+	private void observeIfAbsent(User user, long now) {
+		if (user != null && user.getId() != null && !users.containsKey(user.getId())) {
+			users.put(user.getId(), user, now);
+		}
+	}
+
+	private void observe(Chat chat, long now) {
+		if (chat == null || chat.getId() == null) {
+			return;
+		}
+		CachedChat cached = chats.get(chat.getId());
+		if (cached != null && cached.matches(chat)) {
+			chats.setStamp(chat.getId(), now);
+		} else {
+			chats.put(chat.getId(), new CachedChat(chat), now);
+		}
+	}
+
+	/**
+	 * Evicts the entries seen longest ago, down to seven eighths of the
+	 * maximum so that eviction doesn't run on every update. Entries of a batch
+	 * share their stamp, so of the ones stamped at the cutoff only as many are
+	 * evicted as needed to reach the target
+	 */
+	private void evictIfNeeded(LongObjectHashMap<?> entries) {
+		if (entries.size() <= maxEntries) {
+			return;
+		}
+		long[] stamps = new long[entries.size()];
+		int[] count = new int[1];
+		entries.forEach((key, value, stamp) -> stamps[count[0]++] = stamp);
+		Arrays.sort(stamps);
+		int toEvict = entries.size() - (maxEntries - maxEntries / 8);
+		long cutoff = stamps[toEvict - 1];
+		int older = 0;
+		while (stamps[older] < cutoff) {
+			older++;
+		}
+		int[] ties = { toEvict - older };
+		entries.removeIf((key, value, stamp) -> stamp < cutoff || (stamp == cutoff && ties[0]-- > 0));
+	}
+}
@@ -0,0 +1,135 @@
+package org.telegram.telegrambots.inline;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+
+/**
+ * @author agent
+ * @version 1.0 Keeps the newest inline query of each user.
+ *
+ *          Clients send a new inline query on almost every key stroke, and
+ *          only the answer to the last one is shown. Once a newer query of the
+ *          same user has been received, older ones are superseded: the session
+ *          drops them if they are still queued, the sender doesn't send their
+ *          AnswerInlineQuery and long running handlers can check
+ *          {@link #isSuperseded(InlineQuery)} to give up early.
+ */
+public class InlineQueryTracker {
+	/**
+	 * Time after which a query is forgotten. Telegram doesn't accept answers
+	 * for older queries anyway.
+	 */
+	private static final long RETENTION_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private final Map<Integer, TrackedQuery> latestByUser = new ConcurrentHashMap<>();
+	private final Map<String, Long> superseded = new ConcurrentHashMap<>();
+	private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+	private final AtomicLong skippedQueries = new AtomicLong();
+	private final AtomicLong suppressedAnswers = new AtomicLong();
+
+	/**
+	 * Records a query as the newest one of its user. Queries must be tracked in
+	 * the order they are received.
+	 *
+	 * @param inlineQuery Query received
+	 */
+	public void track(InlineQuery inlineQuery) {
+		if (inlineQuery.getFrom() == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		TrackedQuery previous = latestByUser.put(inlineQuery.getFrom().getId(),
+				new TrackedQuery(inlineQuery.getId(), now));
+		if (previous != null && !previous.id.equals(inlineQuery.getId())) {
+			superseded.put(previous.id, now);
+		}
+		purge(now);
+	}
+
+	/**
+	 * @param inlineQuery Query received
+	 * @return True if a newer query of the same user has been received
+	 */
+	public boolean isSuperseded(InlineQuery inlineQuery) {
+		return superseded.containsKey(inlineQuery.getId());
+	}
+
+	/**
+	 * @param inlineQueryId Id of a query received
+	 * @return True if a newer query of the same user has been received
+	 */
+	public boolean isSuperseded(String inlineQueryId) {
+		return inlineQueryId != null && superseded.containsKey(inlineQueryId);
+	}
+
+	/**
+	 * Number of superseded queries that were dropped before being handled
+	 */
+	public long getSkippedQueries() {
+		return skippedQueries.get();
+	}
+
+	/**
+	 * Number of answers to superseded queries that were not sent
+	 */
+	public long getSuppressedAnswers() {
+		return suppressedAnswers.get();
+	}
+
+	/**
+	 * Checks if a query waiting to be handled must be dropped
+	 *
+	 * @param inlineQuery Query received
+	 * @return True if it has been superseded and must not be handled
+	 */
+	public boolean skipIfSuperseded(InlineQuery inlineQuery) {
+		if (isSuperseded(inlineQuery)) {
+			skippedQueries.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the answer to a query must not be sent
+	 *
+	 * @param inlineQueryId Id of the query answered
+	 * @return True if the query has been superseded and the answer must not be
+	 *         sent
+	 */
+	public boolean suppressIfSuperseded(String inlineQueryId) {
+		if (isSuperseded(inlineQueryId)) {
+			suppressedAnswers.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	private void purge(long now) {
+		long last = lastPurge.get();
+		if (now - last < RETENTION_NANOS || !lastPurge.compareAndSet(last, now)) {
+			return;
+		}
+		superseded.values().removeIf(time -> now - time > RETENTION_NANOS);
+		for (Iterator<TrackedQuery> it = latestByUser.values().iterator(); it.hasNext();) {
+			if (now - it.next().received > RETENTION_NANOS) {
+				it.remove();
+			}
+		}
+	}
+
+	private static final class TrackedQuery {
+		private final String id;
+		private final long received;
+
+		private TrackedQuery(String id, long received) {
+			this.id = id;
+			this.received = received;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package org.telegram.telegrambots.inline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author agent
+ * @version 1.0 Bounded cache of the results of inline queries.
+ *
+ *          The full ranked list of results of a query is searched and
+ *          serialized once, and then every page requested with next_offset is
+ *          answered slicing it. Results are kept per query text, or per query
+ *          text and user when they are personal. The least recently used
+ *          queries are evicted when the cache is full and entries expire after
+ *          their time to live.
+ *          <pre>
+ * AnswerInlineQuery answer = cache.answer(inlineQuery, false, query -> search(query.getQuery()));
+ *          </pre>
+ */
+public class InlineResultsCache {
+	/**
+	 * Maximum number of results allowed by Telegram in an answer
+	 */
+	public static final int MAX_PAGE_SIZE = 50;
+
+	private final ObjectWriter resultWriter = new ObjectMapper().writerFor(InlineQueryResult.class);
+	private final Map<String, CachedResults> entries;
+	private final long ttlNanos;
+	private final int pageSize;
+
+	/**
+	 * @param maxEntries Maximum number of queries cached
+	 * @param ttl        Time to live of the results of a query
+	 * @param unit       Unit of the time to live
+	 * @param pageSize   Results sent in each answer, up to
+	 *                   {@link #MAX_PAGE_SIZE}
+	 */
+	public InlineResultsCache(int maxEntries, long ttl, TimeUnit unit, int pageSize) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be greater than 0");
+		}
+		if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+		}
+		this.entries = new LinkedHashMap<String, CachedResults>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResults> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.ttlNanos = unit.toNanos(ttl);
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Builds the answer to an inline query, searching the results only if they
+	 * are not cached
+	 *
+	 * @param inlineQuery Query received
+	 * @param personal    True if the results depend on the user
+	 * @param search      Search of the ranked results of the query, called on a
+	 *                    cache miss
+	 * @return Answer with the page requested by the offset of the query. The
+	 *         caller may still set other fields like the cache time
+	 * @throws TelegramApiValidationException If a result found is not valid
+	 */
+	public AnswerInlineQuery answer(InlineQuery inlineQuery, boolean personal,
+			Function<InlineQuery, List<? extends InlineQueryResult>> search) throws TelegramApiValidationException {
+		Integer userId = personal && inlineQuery.getFrom() != null ? inlineQuery.getFrom().getId() : null;
+		List<SerializedInlineQueryResult> results = get(inlineQuery.getQuery(), userId);
+		if (results == null) {
+			results = put(inlineQuery.getQuery(), userId, search.apply(inlineQuery));
+		}
+
+		int offset = parseOffset(inlineQuery.getOffset());
+		int end = Math.min(results.size(), offset + pageSize);
+		List<InlineQueryResult> page = offset >= end ? Collections.emptyList()
+				: new ArrayList<>(results.subList(offset, end));
+		return new AnswerInlineQuery().setInlineQueryId(inlineQuery.getId()).setResults(page).setPersonal(personal)
+				.setNextOffset(end < results.size() ? Integer.toString(end) : "");
+	}
+
+	/**
+	 * Gets the cached results of a query
+	 *
+	 * @param query  Text of the query
+	 * @param userId User of personal results, null if they are shared
+	 * @return Ranked results, null if they are not cached or have expired
+	 */
+	public List<SerializedInlineQueryResult> get(String query, Integer userId) {
+		String key = getKey(query, userId);
+		synchronized (entries) {
+			CachedResults entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (System.nanoTime() - entry.created > ttlNanos) {
+				entries.remove(key);
+				return null;
+			}
+			return entry.results;
+		}
+	}
+
+	/**
+	 * Validates, serializes and caches the results of a query
+	 *
+	 * @param query   Text of the query
+	 * @param userId  User of personal results, null if they are shared
+	 * @param results Ranked results
+	 * @return Serialized results
+	 * @throws TelegramApiValidationException If a result is not valid
+	 */
+	public List<SerializedInlineQueryResult> put(String query, Integer userId,
+			List<? extends InlineQueryResult> results) throws TelegramApiValidationException {
+		List<SerializedInlineQueryResult> serialized = new ArrayList<>(results.size());
+		for (InlineQueryResult result : results) {
+			serialized.add(serialize(result));
+		}
+		List<SerializedInlineQueryResult> cached = Collections.unmodifiableList(serialized);
+		synchronized (entries) {
+			entries.put(getKey(query, userId), new CachedResults(cached));
+		}
+		return cached;
+	}
+
+	public void invalidate(String query, Integer userId) {
+		synchronized (entries) {
+			entries.remove(getKey(query, userId));
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private SerializedInlineQueryResult serialize(InlineQueryResult result) throws TelegramApiValidationException {
+		if (result instanceof SerializedInlineQueryResult) {
+			return (SerializedInlineQueryResult) result;
+		}
+		result.validate();
+		try {
+			return new SerializedInlineQueryResult(resultWriter.writeValueAsString(result));
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("Unable to serialize inline query result", e);
+		}
+	}
+
+	private static String getKey(String query, Integer userId) {
+		String text = query == null ? "" : query;
+		return userId == null ? text : userId + "\u0000" + text;
+	}
+
+	/**
+	 * Offsets are generated by this cache, anything else is treated as the
+	 * first page
+	 */
+	private static int parseOffset(String offset) {
+		if (offset == null || offset.isEmpty()) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(offset));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static final class CachedResults {
+		private final List<SerializedInlineQueryResult> results;
+		private final long created = System.nanoTime();
+
+		private CachedResults(List<SerializedInlineQueryResult> results) {
+			this.results = results;
+		}
+	}
+}
@@ -0,0 +1,450 @@
+package org.telegram.telegrambots.inline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+
+/**
+ * @author agent
+ * @version 1.0 In memory n-gram index to answer inline queries over a large
+ *          catalog without scanning it.
+ *
+ *          Texts are split in words of letters and digits, case insensitive.
+ *          Every word is indexed by its trigrams and by its first one and two
+ *          characters, so a query matches the documents containing all its
+ *          words, as substrings when they have three or more characters and
+ *          as word prefixes when they are shorter. The documents having all
+ *          the grams of a query are checked against its words before being
+ *          returned, as a word can have the trigrams of another one without
+ *          containing it. Matches are ranked by the weight given to each
+ *          document, then shorter texts first.
+ *
+ *          The best documents are kept up to date as they are added and
+ *          removed, so an empty query, which matches all of them, doesn't scan
+ *          the index.
+ *
+ *          Documents can be added, replaced and removed at any time; searches
+ *          run concurrently and only wait for writes. Removed documents are
+ *          compacted away once they are as many as the live ones.
+ *
+ * @param <D> Type of the documents
+ */
+public class InlineSearchIndex<D> {
+	private static final char PREFIX_MARKER = '\u0001';
+	private static final int MIN_COMPACTION = 1024;
+	/**
+	 * Best documents kept for empty queries, the most results an inline query
+	 * can be answered with
+	 */
+	private static final int TOP_SIZE = 50;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Long, Postings> postings = new HashMap<>();
+	private final Map<String, Integer> numbersById = new HashMap<>();
+
+	private Object[] documents = new Object[16];
+	private String[] ids = new String[16];
+	private double[] weights = new double[16];
+	private int[] lengths = new int[16];
+	private String[] texts = new String[16];
+	private final int[] top = new int[TOP_SIZE];
+	private final Ranking ranking = new Ranking();
+	private int topSize;
+	private int nextNumber;
+	private int removed;
+
+	/**
+	 * Adds a document, replacing any previous one with the same id
+	 *
+	 * @param id       Unique id of the document
+	 * @param text     Text searched
+	 * @param weight   Rank of the document among the matching ones, higher
+	 *                 first
+	 * @param document Document returned by the searches
+	 */
+	public void put(String id, String text, double weight, D document) {
+		if (id == null || text == null || document == null) {
+			throw new IllegalArgumentException("Id, text and document can't be null");
+		}
+		List<String> words = getWords(text);
+		Set<Long> grams = getGrams(words, false);
+		String normalized = normalize(words);
+		lock.writeLock().lock();
+		try {
+			removeInternal(id);
+			int number = nextNumber++;
+			ensureCapacity(number + 1);
+			documents[number] = document;
+			ids[number] = id;
+			weights[number] = weight;
+			lengths[number] = text.length();
+			texts[number] = normalized;
+			numbersById.put(id, number);
+			for (Long gram : grams) {
+				postings.computeIfAbsent(gram, x -> new Postings()).add(number);
+			}
+			addToTop(number);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a document
+	 *
+	 * @param id Id of the document
+	 * @return True if it was removed, false if it wasn't indexed
+	 */
+	public boolean remove(String id) {
+		lock.writeLock().lock();
+		try {
+			return removeInternal(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Number of documents indexed
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return numbersById.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the best documents matching a query
+	 *
+	 * @param query Text of the inline query
+	 * @param limit Maximum number of documents returned
+	 * @return Matching documents, best first. An empty query matches all the
+	 *         documents
+	 */
+	@SuppressWarnings("unchecked")
+	public List<D> search(String query, int limit) {
+		if (limit <= 0) {
+			return Collections.emptyList();
+		}
+		List<String> words = getWords(query == null ? "" : query);
+		Set<Long> grams = getGrams(words, true);
+		lock.readLock().lock();
+		try {
+			if (grams.isEmpty() && limit <= TOP_SIZE) {
+				List<D> result = new ArrayList<>(Math.min(limit, topSize));
+				for (int i = 0; i < limit && i < topSize; i++) {
+					result.add((D) documents[top[i]]);
+				}
+				return result;
+			}
+			PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+			if (grams.isEmpty()) {
+				for (int number = 0; number < nextNumber; number++) {
+					offer(best, number, limit);
+				}
+			} else {
+				collect(grams, words, best, limit);
+			}
+			Integer[] ranked = best.toArray(new Integer[0]);
+			Arrays.sort(ranked, ranking);
+			List<D> result = new ArrayList<>(ranked.length);
+			for (Integer number : ranked) {
+				result.add((D) documents[number]);
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the best documents matching a query and converts them to inline
+	 * query results, ready to be answered or cached in an
+	 * {@link InlineResultsCache}
+	 *
+	 * @param query     Text of the inline query
+	 * @param limit     Maximum number of results returned
+	 * @param converter Conversion of a document to its result, like an
+	 *                  InlineQueryResultArticle or a cached media result
+	 * @return Results of the matching documents, best first
+	 */
+	public List<InlineQueryResult> search(String query, int limit,
+			Function<? super D, ? extends InlineQueryResult> converter) {
+		List<D> found = search(query, limit);
+		List<InlineQueryResult> results = new ArrayList<>(found.size());
+		for (D document : found) {
+			results.add(converter.apply(document));
+		}
+		return results;
+	}
+
+	private void collect(Set<Long> grams, List<String> words, PriorityQueue<Integer> best, int limit) {
+		Postings[] lists = new Postings[grams.size()];
+		int i = 0;
+		for (Long gram : grams) {
+			Postings list = postings.get(gram);
+			if (list == null) {
+				return;
+			}
+			lists[i++] = list;
+		}
+		// Walk the rarest gram and look the candidates up in the others
+		Arrays.sort(lists, Comparator.comparingInt(x -> x.size));
+		int[] cursors = new int[lists.length];
+		Postings rarest = lists[0];
+		candidates: for (int c = 0; c < rarest.size; c++) {
+			int number = rarest.numbers[c];
+			for (int l = 1; l < lists.length; l++) {
+				int position = lists[l].find(number, cursors[l]);
+				if (position < 0) {
+					cursors[l] = -position - 1;
+					continue candidates;
+				}
+				cursors[l] = position;
+			}
+			if (documents[number] != null && contains(texts[number], words)) {
+				offer(best, number, limit);
+			}
+		}
+	}
+
+	/**
+	 * @param text  Normalized text of a document
+	 * @param words Words of a query
+	 * @return True if the text contains the long words and starts a word with
+	 *         the short ones
+	 */
+	private static boolean contains(String text, List<String> words) {
+		for (String word : words) {
+			if (!text.contains(word.length() < 3 ? " " + word : word)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void offer(PriorityQueue<Integer> best, int number, int limit) {
+		if (documents[number] == null) {
+			return;
+		}
+		best.add(number);
+		if (best.size() > limit) {
+			best.poll();
+		}
+	}
+
+	private boolean removeInternal(String id) {
+		Integer number = numbersById.remove(id);
+		if (number == null) {
+			return false;
+		}
+		// Postings keep the number until the next compaction
+		documents[number] = null;
+		ids[number] = null;
+		texts[number] = null;
+		removed++;
+		for (int i = 0; i < topSize; i++) {
+			if (top[i] == number) {
+				rebuildTop();
+				break;
+			}
+		}
+		if (removed >= MIN_COMPACTION && removed >= numbersById.size()) {
+			compact();
+		}
+		return true;
+	}
+
+	/**
+	 * Renumbers the live documents and drops removed ones from the postings.
+	 * Numbers keep their order, so postings stay sorted.
+	 */
+	private void compact() {
+		int[] renumber = new int[nextNumber];
+		int live = 0;
+		for (int number = 0; number < nextNumber; number++) {
+			if (documents[number] == null) {
+				renumber[number] = -1;
+			} else {
+				renumber[number] = live;
+				documents[live] = documents[number];
+				ids[live] = ids[number];
+				weights[live] = weights[number];
+				lengths[live] = lengths[number];
+				texts[live] = texts[number];
+				numbersById.put(ids[live], live);
+				live++;
+			}
+		}
+		Arrays.fill(documents, live, nextNumber, null);
+		Arrays.fill(ids, live, nextNumber, null);
+		Arrays.fill(texts, live, nextNumber, null);
+		for (int i = 0; i < topSize; i++) {
+			top[i] = renumber[top[i]];
+		}
+		postings.values().removeIf(list -> list.renumber(renumber) == 0);
+		nextNumber = live;
+		removed = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > documents.length) {
+			int newCapacity = Math.max(capacity, documents.length * 2);
+			documents = Arrays.copyOf(documents, newCapacity);
+			ids = Arrays.copyOf(ids, newCapacity);
+			weights = Arrays.copyOf(weights, newCapacity);
+			lengths = Arrays.copyOf(lengths, newCapacity);
+			texts = Arrays.copyOf(texts, newCapacity);
+		}
+	}
+
+	/**
+	 * Inserts a document in the best ones if it ranks among them
+	 */
+	private void addToTop(int number) {
+		if (topSize == TOP_SIZE && ranking.compare(number, top[TOP_SIZE - 1]) > 0) {
+			return;
+		}
+		int position = topSize < TOP_SIZE ? topSize++ : TOP_SIZE - 1;
+		while (position > 0 && ranking.compare(number, top[position - 1]) < 0) {
+			top[position] = top[position - 1];
+			position--;
+		}
+		top[position] = number;
+	}
+
+	/**
+	 * Finds the best documents again, after one of them was removed
+	 */
+	private void rebuildTop() {
+		topSize = 0;
+		for (int number = 0; number < nextNumber; number++) {
+			if (documents[number] != null) {
+				addToTop(number);
+			}
+		}
+	}
+
+	/**
+	 * @return Lower case words of letters and digits of a text
+	 */
+	private static List<String> getWords(String text) {
+		List<String> words = new ArrayList<>();
+		char[] word = new char[text.length()];
+		int length = 0;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				word[length++] = Character.toLowerCase(c);
+			} else if (length > 0) {
+				words.add(new String(word, 0, length));
+				length = 0;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * @return Words separated and surrounded by spaces, so a word prefix is
+	 *         found after a space
+	 */
+	private static String normalize(List<String> words) {
+		StringBuilder normalized = new StringBuilder(" ");
+		for (String word : words) {
+			normalized.append(word).append(' ');
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Gets the grams of some words. Indexed texts get all the grams of their
+	 * words, queries only the trigrams of their long words and the prefix of
+	 * the short ones, so all of them must match.
+	 */
+	private static Set<Long> getGrams(List<String> words, boolean query) {
+		Set<Long> grams = new LinkedHashSet<>();
+		for (String word : words) {
+			int length = word.length();
+			if (!query || length < 3) {
+				grams.add(pack(PREFIX_MARKER, word.charAt(0),
+						length > 1 && (!query || length == 2) ? word.charAt(1) : 0));
+			}
+			if (!query && length > 1) {
+				grams.add(pack(PREFIX_MARKER, word.charAt(0), 0));
+			}
+			for (int j = 0; j + 3 <= length; j++) {
+				grams.add(pack(word.charAt(j), word.charAt(j + 1), word.charAt(j + 2)));
+			}
+		}
+		return grams;
+	}
+
+	private static long pack(char first, char second, int third) {
+		return ((long) first << 32) | ((long) second << 16) | third;
+	}
+
+	/**
+	 * Orders document numbers from the best to the worst
+	 */
+	private final class Ranking implements Comparator<Integer> {
+		@Override
+		public int compare(Integer first, Integer second) {
+			int byWeight = Double.compare(weights[second], weights[first]);
+			if (byWeight != 0) {
+				return byWeight;
+			}
+			int byLength = Integer.compare(lengths[first], lengths[second]);
+			return byLength != 0 ? byLength : Integer.compare(first, second);
+		}
+	}
+
+	/**
+	 * Sorted list of the numbers of the documents containing a gram
+	 */
+	private static final class Postings {
+		private int[] numbers = new int[4];
+		private int size;
+
+		private void add(int number) {
+			if (size == numbers.length) {
+				numbers = Arrays.copyOf(numbers, size * 2);
+			}
+			numbers[size++] = number;
+		}
+
+		/**
+		 * @return Position of the number, or (-(insertion point) - 1) if it is
+		 *         not there
+		 */
+		private int find(int number, int from) {
+			return Arrays.binarySearch(numbers, Math.min(from, size), size, number);
+		}
+
+		private int renumber(int[] renumber) {
+			int live = 0;
+			for (int i = 0; i < size; i++) {
+				int number = renumber[numbers[i]];
+				if (number >= 0) {
+					numbers[live++] = number;
+				}
+			}
+			size = live;
+			return size;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.telegram.telegrambots.inline;
+
+import java.io.IOException;
+
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * @author agent
+ * @version 1.0 Inline query result already serialized to json. It is written
+ *          as is when the AnswerInlineQuery holding it is sent, so results
+ *          served many times are only serialized once.
+ */
+@JsonSerialize(using = SerializedInlineQueryResult.Serializer.class)
+public final class SerializedInlineQueryResult implements InlineQueryResult {
+	private static final long serialVersionUID = 1L;
+
+	private final String json;
+
+	/**
+	 * @param json Json of a valid InlineQueryResult
+	 */
+	public SerializedInlineQueryResult(String json) {
+		this.json = json;
+	}
+
+	public String getJson() {
+		return json;
+	}
+
+	@Override
+	public void validate() throws TelegramApiValidationException {
+		// Validated before being serialized
+	}
+
+	@Override
+	public String toString() {
+		return json;
+	}
+
+	public static final class Serializer extends JsonSerializer<SerializedInlineQueryResult> {
+		@Override
+		public void serialize(SerializedInlineQueryResult value, JsonGenerator gen, SerializerProvider serializers)
+				throws IOException {
+			gen.writeRawValue(value.json);
+		}
+
+		@Override
+		public void serializeWithType(SerializedInlineQueryResult value, JsonGenerator gen,
+				SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+			// The json already carries the type of the original result
+			gen.writeRawValue(value.json);
+		}
+	}
+}
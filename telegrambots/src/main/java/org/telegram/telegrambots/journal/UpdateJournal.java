@@ -0,0 +1,218 @@
+package org.telegram.telegrambots.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Append only journal of the raw updates received, exactly as
+ *          Telegram sent them, to analyze incidents or replay production load
+ *          (see {@link UpdateReplayer}).
+ *
+ *          The journal is a directory of segments named after their sequence
+ *          number and their first update_id. Each segment is a memory mapped
+ *          log of records (length, update_id, time received and json) plus a
+ *          sparse index of the update_id of every {@link #INDEX_INTERVAL}th
+ *          record. Segments are rotated when full, and the oldest are deleted
+ *          beyond a maximum number of them.
+ *
+ *          The length of a record is written last, so a record torn by a crash
+ *          is ignored. Writes reach the file when the operating system flushes
+ *          the mapped pages, or with {@link #flush()}.
+ */
+public class UpdateJournal implements Closeable {
+	private static final String LOGTAG = "UPDATEJOURNAL";
+	static final String LOG_SUFFIX = ".log";
+	static final String INDEX_SUFFIX = ".idx";
+	// length + update_id + time received
+	static final int RECORD_HEADER_SIZE = 4 + 4 + 8;
+	static final int INDEX_INTERVAL = 64;
+	static final int INDEX_ENTRY_SIZE = 8;
+
+	private final File directory;
+	private final int segmentBytes;
+	private final int maxSegments;
+	private MappedByteBuffer log;
+	private MappedByteBuffer index;
+	private int position;
+	private int records;
+
+	/**
+	 * Opens a journal, appending to its last segment if it has any
+	 *
+	 * @param directory    Directory of the segments, created if it doesn't
+	 *                     exist
+	 * @param segmentBytes Size of each segment
+	 * @param maxSegments  Maximum number of segments kept, 0 to keep all of them
+	 * @throws IOException If the journal can't be opened
+	 */
+	public UpdateJournal(File directory, int segmentBytes, int maxSegments) throws IOException {
+		if (segmentBytes < 1024 * 1024) {
+			throw new IllegalArgumentException("Segments must have at least 1MB");
+		}
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.maxSegments = maxSegments;
+		Files.createDirectories(directory.toPath());
+		File[] segments = listSegments(directory);
+		if (segments.length > 0) {
+			openLast(segments[segments.length - 1]);
+		}
+	}
+
+	/**
+	 * Appends an update, for receivers that get them one by one like webhooks
+	 *
+	 * @param updateId Id of the update
+	 * @param json     Raw json of the update
+	 * @return False if it couldn't be written
+	 */
+	public boolean append(int updateId, byte[] json) {
+		return append(updateId, System.currentTimeMillis(), json, 0, json.length);
+	}
+
+	/**
+	 * Appends an update
+	 *
+	 * @param updateId   Id of the update
+	 * @param receivedAt Time in milliseconds when it was received, shared by
+	 *                   the updates received together
+	 * @param content    Buffer holding the raw json of the update
+	 * @param offset     Start of the json in the buffer
+	 * @param length     Length of the json
+	 * @return False if it couldn't be written
+	 */
+	public synchronized boolean append(int updateId, long receivedAt, byte[] content, int offset, int length) {
+		try {
+			if (RECORD_HEADER_SIZE + length > segmentBytes) {
+				throw new IOException("Update " + updateId + " doesn't fit in a segment");
+			}
+			if (log == null || position + RECORD_HEADER_SIZE + length > segmentBytes) {
+				rotate(updateId);
+			}
+			if (records % INDEX_INTERVAL == 0) {
+				int entry = records / INDEX_INTERVAL * INDEX_ENTRY_SIZE;
+				index.putInt(entry, updateId);
+				// Plus one, so an empty entry is never a position
+				index.putInt(entry + 4, position + 1);
+			}
+			log.putInt(position + 4, updateId);
+			log.putLong(position + 8, receivedAt);
+			for (int i = 0; i < length; i++) {
+				log.put(position + RECORD_HEADER_SIZE + i, content[offset + i]);
+			}
+			log.putInt(position, length);
+			position += RECORD_HEADER_SIZE + length;
+			records++;
+			return true;
+		} catch (IOException e) {
+			BotLogger.severe("Unable to journal update " + updateId, LOGTAG, e);
+			return false;
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Forces the records appended to be written to the files
+	 */
+	public synchronized void flush() {
+		if (log != null) {
+			log.force();
+			index.force();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		flush();
+		log = null;
+		index = null;
+	}
+
+	private void rotate(int firstUpdateId) throws IOException {
+		flush();
+		File[] segments = listSegments(directory);
+		long sequence = segments.length == 0 ? 0 : sequenceOf(segments[segments.length - 1]) + 1;
+		String name = String.format("%010d-%010d", sequence, firstUpdateId & 0xFFFFFFFFL);
+		map(new File(directory, name + LOG_SUFFIX), new File(directory, name + INDEX_SUFFIX));
+		position = 0;
+		records = 0;
+		deleteOldSegments();
+	}
+
+	/**
+	 * Maps the last segment and finds its end
+	 */
+	private void openLast(File logFile) throws IOException {
+		map(logFile, indexFileOf(logFile));
+		position = 0;
+		records = 0;
+		int length;
+		while (position + RECORD_HEADER_SIZE <= segmentBytes && (length = log.getInt(position)) > 0
+				&& position + RECORD_HEADER_SIZE + length <= segmentBytes) {
+			position += RECORD_HEADER_SIZE + length;
+			records++;
+		}
+	}
+
+	private void map(File logFile, File indexFile) throws IOException {
+		int indexBytes = (segmentBytes / RECORD_HEADER_SIZE / INDEX_INTERVAL + 1) * INDEX_ENTRY_SIZE;
+		try (RandomAccessFile logAccess = new RandomAccessFile(logFile, "rw");
+				RandomAccessFile indexAccess = new RandomAccessFile(indexFile, "rw")) {
+			log = logAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+			index = indexAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+		}
+	}
+
+	private void deleteOldSegments() {
+		if (maxSegments <= 0) {
+			return;
+		}
+		File[] segments = listSegments(directory);
+		for (int i = 0; i < segments.length - maxSegments; i++) {
+			if (!segments[i].delete() || !indexFileOf(segments[i]).delete()) {
+				BotLogger.warn(LOGTAG, "Unable to delete segment " + segments[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return Log files of the segments, oldest first
+	 */
+	static File[] listSegments(File directory) {
+		File[] segments = directory.listFiles((dir, name) -> name.endsWith(LOG_SUFFIX));
+		if (segments == null) {
+			return new File[0];
+		}
+		// Names start with a zero padded sequence number
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	static File indexFileOf(File logFile) {
+		String name = logFile.getName();
+		return new File(logFile.getParentFile(), name.substring(0, name.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+	}
+
+	private static long sequenceOf(File logFile) {
+		return Long.parseLong(logFile.getName().substring(0, 10));
+	}
+
+	/**
+	 * @return Update id of the first record of a segment
+	 */
+	static int firstUpdateIdOf(File logFile) {
+		return (int) Long.parseLong(logFile.getName().substring(11, 21));
+	}
+}
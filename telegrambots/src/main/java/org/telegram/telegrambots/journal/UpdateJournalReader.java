@@ -0,0 +1,151 @@
+package org.telegram.telegrambots.journal;
+
+import static org.telegram.telegrambots.journal.UpdateJournal.INDEX_ENTRY_SIZE;
+import static org.telegram.telegrambots.journal.UpdateJournal.RECORD_HEADER_SIZE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author agent
+ * @version 1.0 Sequential reader of the records of an {@link UpdateJournal},
+ *          starting at an update_id found through the segment names and their
+ *          indexes. It can read a journal still being written, up to its last
+ *          complete record.
+ */
+public class UpdateJournalReader implements Closeable {
+	private final File[] segments;
+	private final int fromUpdateId;
+	private int startSegment;
+	private int segment;
+	private MappedByteBuffer log;
+	private int position;
+
+	/**
+	 * @param directory    Directory of the journal
+	 * @param fromUpdateId First update_id to read, 0 to read the whole journal
+	 * @throws IOException If the journal can't be read
+	 */
+	public UpdateJournalReader(File directory, int fromUpdateId) throws IOException {
+		this.segments = UpdateJournal.listSegments(directory);
+		this.fromUpdateId = fromUpdateId;
+		// Last segment starting at or before the update
+		for (int i = 0; i < segments.length; i++) {
+			if (UpdateJournal.firstUpdateIdOf(segments[i]) <= fromUpdateId) {
+				startSegment = i;
+			}
+		}
+		segment = startSegment;
+		if (segments.length > 0) {
+			open(segments[segment]);
+			position = indexedPosition(segments[segment]);
+		}
+	}
+
+	/**
+	 * @return Next record of the journal, null when there are no more
+	 * @throws IOException If a segment can't be read
+	 */
+	public Record next() throws IOException {
+		while (log != null) {
+			int length = position + RECORD_HEADER_SIZE <= log.capacity() ? log.getInt(position) : 0;
+			if (length <= 0 || position + RECORD_HEADER_SIZE + length > log.capacity()) {
+				if (++segment >= segments.length) {
+					log = null;
+					return null;
+				}
+				open(segments[segment]);
+				continue;
+			}
+			int updateId = log.getInt(position + 4);
+			long receivedAt = log.getLong(position + 8);
+			byte[] json = new byte[length];
+			for (int i = 0; i < length; i++) {
+				json[i] = log.get(position + RECORD_HEADER_SIZE + i);
+			}
+			position += RECORD_HEADER_SIZE + length;
+			// Later segments are read whole, in case update ids went back
+			if (segment > startSegment || updateId >= fromUpdateId) {
+				return new Record(updateId, receivedAt, json);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() {
+		log = null;
+	}
+
+	private void open(File logFile) throws IOException {
+		try (RandomAccessFile access = new RandomAccessFile(logFile, "r")) {
+			log = access.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, access.length());
+		}
+		position = 0;
+	}
+
+	/**
+	 * @return Position of the last indexed record before the update
+	 */
+	private int indexedPosition(File logFile) throws IOException {
+		File indexFile = UpdateJournal.indexFileOf(logFile);
+		if (!indexFile.exists()) {
+			return 0;
+		}
+		try (RandomAccessFile access = new RandomAccessFile(indexFile, "r")) {
+			MappedByteBuffer index = access.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, access.length());
+			int low = 0;
+			int high = (int) (access.length() / INDEX_ENTRY_SIZE) - 1;
+			int found = 0;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int entry = middle * INDEX_ENTRY_SIZE;
+				int position = index.getInt(entry + 4) - 1;
+				if (position < 0 || index.getInt(entry) > fromUpdateId) {
+					high = middle - 1;
+				} else {
+					found = position;
+					low = middle + 1;
+				}
+			}
+			return found;
+		}
+	}
+
+	/**
+	 * Update as it was received
+	 */
+	public static final class Record {
+		private final int updateId;
+		private final long receivedAt;
+		private final byte[] json;
+
+		private Record(int updateId, long receivedAt, byte[] json) {
+			this.updateId = updateId;
+			this.receivedAt = receivedAt;
+			this.json = json;
+		}
+
+		public int getUpdateId() {
+			return updateId;
+		}
+
+		/**
+		 * @return Time in milliseconds when the update was received
+		 */
+		public long getReceivedAt() {
+			return receivedAt;
+		}
+
+		/**
+		 * @return Raw json of the update
+		 */
+		public byte[] getJson() {
+			return json;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.telegram.telegrambots.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Feeds the updates of an {@link UpdateJournal} to a bot through
+ *          {@link LongPollingBot#onUpdatesReceived(List)}, to reproduce
+ *          production load offline.
+ *
+ *          Updates received together are delivered together. They can be
+ *          replayed at the recorded pace, faster or slower, or as fast as the
+ *          bot handles them.
+ */
+public class UpdateReplayer {
+	/**
+	 * Most updates delivered at once when replaying as fast as possible, as
+	 * getUpdates does
+	 */
+	private static final int MAX_BATCH = 100;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final File directory;
+
+	/**
+	 * @param directory Directory of the journal
+	 */
+	public UpdateReplayer(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Replays the journal
+	 *
+	 * @param bot          Bot receiving the updates
+	 * @param fromUpdateId First update_id to replay, 0 to replay the whole
+	 *                     journal
+	 * @param speed        Speed relative to the recorded pace (2 replays twice
+	 *                     as fast), 0 to replay as fast as possible
+	 * @return Number of updates replayed
+	 * @throws IOException          If the journal can't be read
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 *                              for the next updates
+	 */
+	public long replay(LongPollingBot bot, int fromUpdateId, double speed) throws IOException, InterruptedException {
+		long replayed = 0;
+		try (UpdateJournalReader reader = new UpdateJournalReader(directory, fromUpdateId)) {
+			UpdateJournalReader.Record record = reader.next();
+			long firstReceivedAt = record == null ? 0 : record.getReceivedAt();
+			long start = System.nanoTime();
+			List<Update> batch = new ArrayList<>();
+			while (record != null) {
+				long receivedAt = record.getReceivedAt();
+				do {
+					batch.add(objectMapper.readValue(record.getJson(), Update.class));
+					record = reader.next();
+				} while (record != null && (speed > 0 ? record.getReceivedAt() == receivedAt : batch.size() < MAX_BATCH));
+
+				if (speed > 0) {
+					long dueNanos = (long) ((receivedAt - firstReceivedAt) * 1_000_000L / speed);
+					long waitNanos = dueNanos - (System.nanoTime() - start);
+					if (waitNanos > 0) {
+						Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+					}
+				}
+				replayed += batch.size();
+				bot.onUpdatesReceived(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		return replayed;
+	}
+}
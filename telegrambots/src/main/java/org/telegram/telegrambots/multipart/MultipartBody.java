@@ -0,0 +1,45 @@
+package org.telegram.telegrambots.multipart;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.client.util.MultiPartContentProvider;
+import org.eclipse.jetty.io.ByteBufferPool;
+
+/**
+ * @author agent
+ * @version 1.0 Multipart content produced by {@link MultipartEncoder}. It
+ *          holds a pooled buffer that must be given back with
+ *          {@link #release()} once the request has been sent.
+ */
+public final class MultipartBody {
+	private final String path;
+	private final MultiPartContentProvider content;
+	private final ByteBufferPool pool;
+	private ByteBuffer buffer;
+
+	MultipartBody(String path, MultiPartContentProvider content, ByteBufferPool pool, ByteBuffer buffer) {
+		this.path = path;
+		this.content = content;
+		this.pool = pool;
+		this.buffer = buffer;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public MultiPartContentProvider getContent() {
+		return content;
+	}
+
+	/**
+	 * Returns the text buffer to the pool. The content can't be used anymore
+	 * after this call.
+	 */
+	public void release() {
+		if (buffer != null) {
+			pool.release(buffer);
+			buffer = null;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.telegram.telegrambots.multipart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+
+/**
+ * @author agent
+ * @version 1.0 Precomputed description of the multipart/form-data parts of
+ *          a {@link PartialBotApiMethod}. Descriptors are built once and
+ *          registered in a {@link MultipartEncoder}, so sending a method
+ *          only walks this table instead of hand-written code per method.
+ */
+public final class MultipartDescriptor<M extends PartialBotApiMethod<?>> {
+
+	enum Kind {
+		/** Plain field, sent as value.toString() */
+		FIELD,
+		/** Field serialized as json */
+		JSON,
+		/** InputFile, uploaded under its media name if new and referenced by field */
+		FILE,
+		/** InputFile uploaded directly under the field name */
+		UPLOAD,
+		/** InputMedia, with its own file and thumb uploads */
+		MEDIA,
+		/** List of InputMedia, with their own file and thumb uploads */
+		MEDIA_LIST
+	}
+
+	static final class Part<M> {
+		final Kind kind;
+		final String name;
+		final Function<M, ?> getter;
+
+		Part(Kind kind, String name, Function<M, ?> getter) {
+			this.kind = kind;
+			this.name = name;
+			this.getter = getter;
+		}
+	}
+
+	private final Class<M> type;
+	private final String path;
+	private final List<Part<M>> parts = new ArrayList<>();
+
+	private MultipartDescriptor(Class<M> type, String path) {
+		this.type = type;
+		this.path = path;
+	}
+
+	/**
+	 * Starts a new descriptor
+	 *
+	 * @param type Method class described
+	 * @param path Path of the method in the Bot API
+	 * @return New empty descriptor
+	 */
+	public static <M extends PartialBotApiMethod<?>> MultipartDescriptor<M> of(Class<M> type, String path) {
+		return new MultipartDescriptor<>(type, path);
+	}
+
+	/**
+	 * Adds a plain field. Null values are not sent.
+	 */
+	public MultipartDescriptor<M> field(String name, Function<M, ?> getter) {
+		return add(Kind.FIELD, name, getter);
+	}
+
+	/**
+	 * Adds a field that is sent serialized as json. Null values are not sent.
+	 */
+	public MultipartDescriptor<M> json(String name, Function<M, ?> getter) {
+		return add(Kind.JSON, name, getter);
+	}
+
+	/**
+	 * Adds an InputFile. New files are uploaded under their media name and the
+	 * field holds the file_id or attach:// reference.
+	 */
+	public MultipartDescriptor<M> file(String name, Function<M, InputFile> getter) {
+		return add(Kind.FILE, name, getter);
+	}
+
+	/**
+	 * Adds a new file that is uploaded directly under the field name.
+	 */
+	public MultipartDescriptor<M> upload(String name, Function<M, InputFile> getter) {
+		return add(Kind.UPLOAD, name, getter);
+	}
+
+	/**
+	 * Adds an InputMedia field, uploading its new media and thumb if needed.
+	 */
+	public MultipartDescriptor<M> media(String name, Function<M, InputMedia<?>> getter) {
+		return add(Kind.MEDIA, name, getter);
+	}
+
+	/**
+	 * Adds a list of InputMedia, uploading their new media and thumbs if
+	 * needed.
+	 */
+	public MultipartDescriptor<M> mediaList(String name, Function<M, ? extends List<?>> getter) {
+		return add(Kind.MEDIA_LIST, name, getter);
+	}
+
+	public Class<M> getType() {
+		return type;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	List<Part<M>> getParts() {
+		return parts;
+	}
+
+	private MultipartDescriptor<M> add(Kind kind, String name, Function<M, ?> getter) {
+		parts.add(new Part<>(kind, name, getter));
+		return this;
+	}
+}
@@ -0,0 +1,394 @@
+package org.telegram.telegrambots.multipart;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
+import org.eclipse.jetty.client.util.InputStreamContentProvider;
+import org.eclipse.jetty.client.util.MultiPartContentProvider;
+import org.eclipse.jetty.client.util.PathContentProvider;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.SetChatPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
+import org.telegram.telegrambots.meta.api.methods.send.SendAudio;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendSticker;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideoNote;
+import org.telegram.telegrambots.meta.api.methods.send.SendVoice;
+import org.telegram.telegrambots.meta.api.methods.stickers.AddStickerToSet;
+import org.telegram.telegrambots.meta.api.methods.stickers.CreateNewStickerSet;
+import org.telegram.telegrambots.meta.api.methods.stickers.UploadStickerFile;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageMedia;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaAnimation;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaAudio;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaDocument;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaVideo;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Encodes any registered {@link PartialBotApiMethod} as
+ *          multipart/form-data following its {@link MultipartDescriptor}.
+ *
+ *          All text parts of a request are UTF-8 encoded into a single buffer
+ *          taken from a {@link ByteBufferPool}; the buffer goes back to the
+ *          pool when the returned {@link MultipartBody} is released.
+ */
+public class MultipartEncoder {
+	private final Map<Class<?>, MultipartDescriptor<?>> descriptors = new ConcurrentHashMap<>();
+	private final ObjectMapper objectMapper;
+
+	public MultipartEncoder(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		registerDefaults();
+	}
+
+	/**
+	 * Registers (or replaces) the descriptor of a method class. Subclasses of
+	 * a registered class use the descriptor of their closest registered
+	 * superclass.
+	 *
+	 * @param descriptor Descriptor to register
+	 */
+	public void register(MultipartDescriptor<?> descriptor) {
+		descriptors.put(descriptor.getType(), descriptor);
+	}
+
+	/**
+	 * Gets the descriptor used for a method class
+	 *
+	 * @param type Method class
+	 * @return Descriptor, or null if none is registered for it or its
+	 *         superclasses
+	 */
+	public MultipartDescriptor<?> getDescriptor(Class<?> type) {
+		MultipartDescriptor<?> descriptor = descriptors.get(type);
+		if (descriptor == null) {
+			for (Class<?> parent = type.getSuperclass(); parent != null; parent = parent.getSuperclass()) {
+				descriptor = descriptors.get(parent);
+				if (descriptor != null) {
+					descriptors.put(type, descriptor);
+					break;
+				}
+			}
+		}
+		return descriptor;
+	}
+
+	/**
+	 * Encodes a method as multipart/form-data
+	 *
+	 * @param method Method to encode
+	 * @param pool   Pool to take the text buffer from
+	 * @return Body to send, it must be released once the request is done
+	 * @throws TelegramApiException If the method class is not registered
+	 * @throws IOException          If any part can not be encoded
+	 */
+	@SuppressWarnings("unchecked")
+	public <M extends PartialBotApiMethod<?>> MultipartBody encode(M method, ByteBufferPool pool)
+			throws TelegramApiException, IOException {
+		MultipartDescriptor<M> descriptor = (MultipartDescriptor<M>) getDescriptor(method.getClass());
+		if (descriptor == null) {
+			throw new TelegramApiException("No multipart descriptor registered for " + method.getClass().getName());
+		}
+
+		List<MultipartDescriptor.Part<M>> parts = descriptor.getParts();
+		MultiPartContentProvider multiPart = new MultiPartContentProvider();
+		String[] values = new String[parts.size()];
+		int size = 0;
+
+		for (int i = 0; i < values.length; i++) {
+			MultipartDescriptor.Part<M> part = parts.get(i);
+			Object value = part.getter.apply(method);
+			if (value != null) {
+				values[i] = encodePart(multiPart, part, value);
+				if (values[i] != null) {
+					size += utf8Length(values[i]);
+				}
+			}
+		}
+
+		ByteBuffer buffer = null;
+		if (size > 0) {
+			buffer = pool.acquire(size, false);
+			buffer.clear();
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					int start = buffer.position();
+					putUtf8(buffer, values[i]);
+					ByteBuffer slice = buffer.duplicate();
+					slice.position(start);
+					slice.limit(buffer.position());
+					multiPart.addFieldPart(parts.get(i).name, new ByteBufferContentProvider(slice.slice()), null);
+				}
+			}
+		}
+
+		return new MultipartBody(descriptor.getPath(), multiPart, pool, buffer);
+	}
+
+	/**
+	 * Adds the file parts of a value and returns its field text, if any
+	 */
+	private String encodePart(MultiPartContentProvider multiPart, MultipartDescriptor.Part<?> part, Object value)
+			throws IOException {
+		switch (part.kind) {
+		case FIELD:
+			return value.toString();
+		case JSON:
+			return objectMapper.writeValueAsString(value);
+		case FILE:
+			InputFile file = (InputFile) value;
+			addFilePart(multiPart, file, file.getMediaName());
+			return file.getAttachName();
+		case UPLOAD:
+			addFilePart(multiPart, (InputFile) value, part.name);
+			return null;
+		case MEDIA:
+			addMediaParts(multiPart, (InputMedia<?>) value);
+			return objectMapper.writeValueAsString(value);
+		case MEDIA_LIST:
+			for (Object media : (List<?>) value) {
+				addMediaParts(multiPart, (InputMedia<?>) media);
+			}
+			return objectMapper.writeValueAsString(value);
+		default:
+			throw new IllegalStateException("Unknown part kind " + part.kind);
+		}
+	}
+
+	private void addMediaParts(MultiPartContentProvider multiPart, InputMedia<?> media) throws IOException {
+		if (media.isNewMedia()) {
+			if (media.getMediaFile() != null) {
+				multiPart.addFilePart(media.getMediaName(), media.getMediaName(),
+						new PathContentProvider(Paths.get(media.getMediaFile().getAbsolutePath())), null);
+			} else if (media.getNewMediaStream() != null) {
+				multiPart.addFilePart(media.getMediaName(), media.getMediaName(),
+						new InputStreamContentProvider(media.getNewMediaStream()), null);
+			}
+		}
+
+		InputFile thumb = null;
+		if (media instanceof InputMediaAudio) {
+			thumb = ((InputMediaAudio) media).getThumb();
+		} else if (media instanceof InputMediaDocument) {
+			thumb = ((InputMediaDocument) media).getThumb();
+		} else if (media instanceof InputMediaVideo) {
+			thumb = ((InputMediaVideo) media).getThumb();
+		} else if (media instanceof InputMediaAnimation) {
+			thumb = ((InputMediaAnimation) media).getThumb();
+		}
+		if (thumb != null) {
+			addFilePart(multiPart, thumb, thumb.getMediaName());
+		}
+	}
+
+	private void addFilePart(MultiPartContentProvider multiPart, InputFile file, String partName)
+			throws IOException {
+		if (file.isNew()) {
+			ContentProvider content = null;
+			if (file.getNewMediaFile() != null) {
+				content = new PathContentProvider(Paths.get(file.getNewMediaFile().getAbsolutePath()));
+			} else if (file.getNewMediaStream() != null) {
+				content = new InputStreamContentProvider(file.getNewMediaStream());
+			}
+			if (content != null) {
+				multiPart.addFilePart(partName, file.getMediaName(), content, null);
+			}
+		}
+	}
+
+	static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	static void putUtf8(ByteBuffer buffer, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private void registerDefaults() {
+		register(MultipartDescriptor.of(SendDocument.class, SendDocument.PATH)
+				.field(SendDocument.CHATID_FIELD, SendDocument::getChatId)
+				.file(SendDocument.DOCUMENT_FIELD, SendDocument::getDocument)
+				.json(SendDocument.REPLYMARKUP_FIELD, SendDocument::getReplyMarkup)
+				.field(SendDocument.REPLYTOMESSAGEID_FIELD, SendDocument::getReplyToMessageId)
+				.field(SendDocument.CAPTION_FIELD, SendDocument::getCaption)
+				.field(SendDocument.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode())
+				.field(SendDocument.DISABLENOTIFICATION_FIELD, SendDocument::getDisableNotification)
+				.file(SendDocument.THUMB_FIELD, SendDocument::getThumb));
+
+		register(MultipartDescriptor.of(SendPhoto.class, SendPhoto.PATH)
+				.field(SendPhoto.CHATID_FIELD, SendPhoto::getChatId)
+				.file(SendPhoto.PHOTO_FIELD, SendPhoto::getPhoto)
+				.json(SendPhoto.REPLYMARKUP_FIELD, SendPhoto::getReplyMarkup)
+				.field(SendPhoto.REPLYTOMESSAGEID_FIELD, SendPhoto::getReplyToMessageId)
+				.field(SendPhoto.CAPTION_FIELD, SendPhoto::getCaption)
+				.field(SendPhoto.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode())
+				.field(SendPhoto.DISABLENOTIFICATION_FIELD, SendPhoto::getDisableNotification));
+
+		register(MultipartDescriptor.of(SendVideo.class, SendVideo.PATH)
+				.field(SendVideo.CHATID_FIELD, SendVideo::getChatId)
+				.file(SendVideo.VIDEO_FIELD, SendVideo::getVideo)
+				.json(SendVideo.REPLYMARKUP_FIELD, SendVideo::getReplyMarkup)
+				.field(SendVideo.REPLYTOMESSAGEID_FIELD, SendVideo::getReplyToMessageId)
+				.field(SendVideo.CAPTION_FIELD, SendVideo::getCaption)
+				.field(SendVideo.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode())
+				.field(SendVideo.SUPPORTSSTREAMING_FIELD, SendVideo::getSupportsStreaming)
+				.field(SendVideo.DURATION_FIELD, SendVideo::getDuration)
+				.field(SendVideo.WIDTH_FIELD, SendVideo::getWidth)
+				.field(SendVideo.HEIGHT_FIELD, SendVideo::getHeight)
+				.field(SendVideo.DISABLENOTIFICATION_FIELD, SendVideo::getDisableNotification)
+				.file(SendVideo.THUMB_FIELD, SendVideo::getThumb));
+
+		register(MultipartDescriptor.of(SendVideoNote.class, SendVideoNote.PATH)
+				.field(SendVideoNote.CHATID_FIELD, SendVideoNote::getChatId)
+				.file(SendVideoNote.VIDEONOTE_FIELD, SendVideoNote::getVideoNote)
+				.json(SendVideoNote.REPLYMARKUP_FIELD, SendVideoNote::getReplyMarkup)
+				.field(SendVideoNote.REPLYTOMESSAGEID_FIELD, SendVideoNote::getReplyToMessageId)
+				.field(SendVideoNote.DURATION_FIELD, SendVideoNote::getDuration)
+				.field(SendVideoNote.LENGTH_FIELD, SendVideoNote::getLength)
+				.field(SendVideoNote.DISABLENOTIFICATION_FIELD, SendVideoNote::getDisableNotification)
+				.file(SendVideoNote.THUMB_FIELD, SendVideoNote::getThumb));
+
+		register(MultipartDescriptor.of(SendSticker.class, SendSticker.PATH)
+				.field(SendSticker.CHATID_FIELD, SendSticker::getChatId)
+				.file(SendSticker.STICKER_FIELD, SendSticker::getSticker)
+				.json(SendSticker.REPLYMARKUP_FIELD, SendSticker::getReplyMarkup)
+				.field(SendSticker.REPLYTOMESSAGEID_FIELD, SendSticker::getReplyToMessageId)
+				.field(SendSticker.DISABLENOTIFICATION_FIELD, SendSticker::getDisableNotification));
+
+		register(MultipartDescriptor.of(SendAudio.class, SendAudio.PATH)
+				.field(SendAudio.CHATID_FIELD, SendAudio::getChatId)
+				.file(SendAudio.AUDIO_FIELD, SendAudio::getAudio)
+				.json(SendAudio.REPLYMARKUP_FIELD, SendAudio::getReplyMarkup)
+				.field(SendAudio.REPLYTOMESSAGEID_FIELD, SendAudio::getReplyToMessageId)
+				.field(SendAudio.PERFOMER_FIELD, SendAudio::getPerformer)
+				.field(SendAudio.TITLE_FIELD, SendAudio::getTitle)
+				.field(SendAudio.DURATION_FIELD, SendAudio::getDuration)
+				.field(SendAudio.DISABLENOTIFICATION_FIELD, SendAudio::getDisableNotification)
+				.field(SendAudio.CAPTION_FIELD, SendAudio::getCaption)
+				.field(SendAudio.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode())
+				.file(SendAudio.THUMB_FIELD, SendAudio::getThumb));
+
+		register(MultipartDescriptor.of(SendVoice.class, SendVoice.PATH)
+				.field(SendVoice.CHATID_FIELD, SendVoice::getChatId)
+				.file(SendVoice.VOICE_FIELD, SendVoice::getVoice)
+				.json(SendVoice.REPLYMARKUP_FIELD, SendVoice::getReplyMarkup)
+				.field(SendVoice.REPLYTOMESSAGEID_FIELD, SendVoice::getReplyToMessageId)
+				.field(SendVoice.DISABLENOTIFICATION_FIELD, SendVoice::getDisableNotification)
+				.field(SendVoice.DURATION_FIELD, SendVoice::getDuration)
+				.field(SendVoice.CAPTION_FIELD, SendVoice::getCaption)
+				.field(SendVoice.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode()));
+
+		register(MultipartDescriptor.of(SendAnimation.class, SendAnimation.PATH)
+				.field(SendAnimation.CHATID_FIELD, SendAnimation::getChatId)
+				.file(SendAnimation.ANIMATION_FIELD, SendAnimation::getAnimation)
+				.json(SendAnimation.REPLYMARKUP_FIELD, SendAnimation::getReplyMarkup)
+				.field(SendAnimation.REPLYTOMESSAGEID_FIELD, SendAnimation::getReplyToMessageId)
+				.field(SendAnimation.DISABLENOTIFICATION_FIELD, SendAnimation::getDisableNotification)
+				.field(SendAnimation.DURATION_FIELD, SendAnimation::getDuration)
+				.field(SendAnimation.WIDTH_FIELD, SendAnimation::getWidth)
+				.field(SendAnimation.HEIGHT_FIELD, SendAnimation::getHeight)
+				.file(SendAnimation.THUMB_FIELD, SendAnimation::getThumb)
+				.field(SendAnimation.CAPTION_FIELD, SendAnimation::getCaption)
+				.field(SendAnimation.PARSEMODE_FIELD, m -> m.getCaption() == null ? null : m.getParseMode()));
+
+		register(MultipartDescriptor.of(SetChatPhoto.class, SetChatPhoto.PATH)
+				.field(SetChatPhoto.CHATID_FIELD, SetChatPhoto::getChatId)
+				.upload(SetChatPhoto.PHOTO_FIELD, MultipartEncoder::getChatPhoto));
+
+		register(MultipartDescriptor.of(SendMediaGroup.class, SendMediaGroup.PATH)
+				.field(SendMediaGroup.CHATID_FIELD, SendMediaGroup::getChatId)
+				.mediaList(SendMediaGroup.MEDIA_FIELD, SendMediaGroup::getMedia)
+				.field(SendMediaGroup.DISABLENOTIFICATION_FIELD, SendMediaGroup::getDisableNotification)
+				.field(SendMediaGroup.REPLYTOMESSAGEID_FIELD, SendMediaGroup::getReplyToMessageId));
+
+		register(MultipartDescriptor.of(AddStickerToSet.class, AddStickerToSet.PATH)
+				.field(AddStickerToSet.USERID_FIELD, AddStickerToSet::getUserId)
+				.field(AddStickerToSet.NAME_FIELD, AddStickerToSet::getName)
+				.field(AddStickerToSet.EMOJIS_FIELD, AddStickerToSet::getEmojis)
+				.file(AddStickerToSet.PNGSTICKER_FIELD, AddStickerToSet::getPngSticker)
+				.json(AddStickerToSet.MASKPOSITION_FIELD, AddStickerToSet::getMaskPosition));
+
+		register(MultipartDescriptor.of(CreateNewStickerSet.class, CreateNewStickerSet.PATH)
+				.field(CreateNewStickerSet.USERID_FIELD, CreateNewStickerSet::getUserId)
+				.field(CreateNewStickerSet.NAME_FIELD, CreateNewStickerSet::getName)
+				.field(CreateNewStickerSet.TITLE_FIELD, CreateNewStickerSet::getTitle)
+				.field(CreateNewStickerSet.EMOJIS_FIELD, CreateNewStickerSet::getEmojis)
+				.field(CreateNewStickerSet.CONTAINSMASKS_FIELD, CreateNewStickerSet::getContainsMasks)
+				.file(CreateNewStickerSet.PNGSTICKER_FIELD, CreateNewStickerSet::getPngSticker)
+				.json(CreateNewStickerSet.MASKPOSITION_FIELD, CreateNewStickerSet::getMaskPosition));
+
+		register(MultipartDescriptor.of(UploadStickerFile.class, UploadStickerFile.PATH)
+				.field(UploadStickerFile.USERID_FIELD, UploadStickerFile::getUserId)
+				.file(UploadStickerFile.PNGSTICKER_FIELD, UploadStickerFile::getPngSticker));
+
+		register(MultipartDescriptor.of(EditMessageMedia.class, EditMessageMedia.PATH)
+				.field(EditMessageMedia.CHATID_FIELD, m -> m.getInlineMessageId() == null ? m.getChatId() : null)
+				.field(EditMessageMedia.MESSAGEID_FIELD,
+						m -> m.getInlineMessageId() == null ? m.getMessageId() : null)
+				.field(EditMessageMedia.INLINE_MESSAGE_ID_FIELD, EditMessageMedia::getInlineMessageId)
+				.json(EditMessageMedia.REPLYMARKUP_FIELD, EditMessageMedia::getReplyMarkup)
+				.media(EditMessageMedia.MEDIA_FIELD, EditMessageMedia::getMedia));
+	}
+
+	private static InputFile getChatPhoto(SetChatPhoto setChatPhoto) {
+		if (setChatPhoto.getPhoto() != null) {
+			return new InputFile(setChatPhoto.getPhoto(), setChatPhoto.getPhoto().getName());
+		} else if (setChatPhoto.getPhotoStream() != null) {
+			return new InputFile(setChatPhoto.getPhotoStream(), setChatPhoto.getPhotoName());
+		}
+		return null;
+	}
+}
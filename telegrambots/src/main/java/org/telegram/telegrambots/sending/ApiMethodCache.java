@@ -0,0 +1,294 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.GetMe;
+import org.telegram.telegrambots.meta.api.methods.GetUserProfilePhotos;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.DeleteChatPhoto;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.DeleteChatStickerSet;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChat;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatAdministrators;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMembersCount;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.KickChatMember;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.LeaveChat;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.PromoteChatMember;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictChatMember;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.SetChatDescription;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.SetChatStickerSet;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.SetChatTitle;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.UnbanChatMember;
+import org.telegram.telegrambots.meta.api.methods.pinnedmessages.PinChatMessage;
+import org.telegram.telegrambots.meta.api.methods.pinnedmessages.UnpinChatMessage;
+import org.telegram.telegrambots.meta.api.methods.stickers.GetStickerSet;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Read-through cache of the results of read only methods, like
+ *          GetChatAdministrators or GetChatMember.
+ *
+ *          Each method type has its own time to live, 0 meaning it is not
+ *          cached. Concurrent calls of the same method with the same
+ *          parameters share one request: the first one sends it and the rest
+ *          wait for its result. Failed requests are not cached.
+ *
+ *          Results of a chat are invalidated when updates show that it
+ *          changed (members joining or leaving, a new title or photo...) and
+ *          when the bot changes it through its own sender. Chats identified
+ *          by username are only invalidated by time.
+ *
+ *          Cached results are shared by all the callers, so they must not be
+ *          modified.
+ */
+public class ApiMethodCache {
+	private static final String CHATID_FIELD = "chat_id";
+	private static final Set<Class<?>> CHAT_CHANGING_METHODS = new HashSet<>(Arrays.asList(KickChatMember.class,
+			UnbanChatMember.class, RestrictChatMember.class, PromoteChatMember.class, LeaveChat.class,
+			SetChatTitle.class, SetChatDescription.class, DeleteChatPhoto.class, SetChatStickerSet.class,
+			DeleteChatStickerSet.class, PinChatMessage.class, UnpinChatMessage.class));
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<Class<?>, Long> ttlNanos = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final int maxEntries;
+
+	/**
+	 * Creates a cache with the default times to live: an hour for GetMe, ten
+	 * minutes for GetStickerSet and GetFile, five for GetUserProfilePhotos and
+	 * one for the chat methods
+	 *
+	 * @param maxEntries Maximum number of results to keep
+	 */
+	public ApiMethodCache(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Max entries must be positive");
+		}
+		this.maxEntries = maxEntries;
+		setTimeToLive(GetMe.class, 1, TimeUnit.HOURS);
+		setTimeToLive(GetStickerSet.class, 10, TimeUnit.MINUTES);
+		setTimeToLive(GetFile.class, 10, TimeUnit.MINUTES);
+		setTimeToLive(GetUserProfilePhotos.class, 5, TimeUnit.MINUTES);
+		setTimeToLive(GetChat.class, 1, TimeUnit.MINUTES);
+		setTimeToLive(GetChatAdministrators.class, 1, TimeUnit.MINUTES);
+		setTimeToLive(GetChatMember.class, 1, TimeUnit.MINUTES);
+		setTimeToLive(GetChatMembersCount.class, 1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Sets for how long the results of a method are cached, also used for its
+	 * subclasses without their own
+	 *
+	 * @param type Class of the method. It must be read only
+	 * @param ttl  Time to live of its results, 0 to not cache them
+	 * @param unit Unit of the time to live
+	 */
+	public void setTimeToLive(Class<? extends BotApiMethod<?>> type, long ttl, TimeUnit unit) {
+		if (ttl > 0) {
+			ttlNanos.put(type, unit.toNanos(ttl));
+		} else {
+			ttlNanos.remove(type);
+		}
+	}
+
+	/**
+	 * @return True if the results of the method are cached
+	 */
+	public boolean isCached(BotApiMethod<?> method) {
+		return getTimeToLive(method) != null;
+	}
+
+	/**
+	 * @return Time to live of the results of the method, or of the closest of
+	 *         its superclasses that has one, null if they are not cached
+	 */
+	private Long getTimeToLive(BotApiMethod<?> method) {
+		for (Class<?> type = method.getClass(); type != null; type = type.getSuperclass()) {
+			Long ttl = ttlNanos.get(type);
+			if (ttl != null) {
+				return ttl;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the result of a method, from the cache or from the loader if it is
+	 * not cached or it expired
+	 *
+	 * @param method Method to execute
+	 * @param loader Sender of the method
+	 * @return Result of the method
+	 * @throws TelegramApiException If the loader fails, also thrown to the
+	 *                              calls waiting for it
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> T get(BotApiMethod<T> method, Loader<T> loader) throws TelegramApiException {
+		Long ttl = getTimeToLive(method);
+		if (ttl == null) {
+			return loader.load();
+		}
+		JsonNode tree = objectMapper.valueToTree(method);
+		String key = method.getMethod() + tree;
+
+		Entry entry;
+		boolean loading = false;
+		while (true) {
+			entry = entries.get(key);
+			if (entry == null) {
+				Entry created = new Entry(tree.path(CHATID_FIELD).asText(null));
+				entry = entries.putIfAbsent(key, created);
+				if (entry == null) {
+					entry = created;
+					loading = true;
+					break;
+				}
+			} else if (entry.isExpired(System.nanoTime())) {
+				entries.remove(key, entry);
+			} else {
+				break;
+			}
+		}
+
+		if (loading) {
+			try {
+				T result = loader.load();
+				entry.expiresAt = System.nanoTime() + ttl;
+				entry.result.complete(result);
+				if (entries.size() > maxEntries) {
+					evict();
+				}
+				return result;
+			} catch (TelegramApiException | RuntimeException e) {
+				entries.remove(key, entry);
+				entry.result.completeExceptionally(e);
+				throw e;
+			}
+		}
+
+		try {
+			return (T) entry.result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TelegramApiException) {
+				throw (TelegramApiException) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TelegramApiException("Interrupted waiting for " + method.getMethod(), e);
+		}
+	}
+
+	/**
+	 * Invalidates the results of the chat changed by a method sent by the bot
+	 *
+	 * @param method Method sent successfully
+	 */
+	public void sent(BotApiMethod<?> method) {
+		if (CHAT_CHANGING_METHODS.contains(method.getClass())) {
+			String chatId = objectMapper.valueToTree(method).path(CHATID_FIELD).asText(null);
+			if (chatId != null) {
+				invalidateChat(chatId);
+			}
+		}
+	}
+
+	/**
+	 * Invalidates the results of the chats changed by the updates
+	 *
+	 * @param updates Updates received
+	 */
+	public void invalidate(List<Update> updates) {
+		for (Update update : updates) {
+			Message message = update.getMessage();
+			if (message != null && isChatChange(message)) {
+				invalidateChat(message.getChatId().toString());
+				if (message.getMigrateToChatId() != null) {
+					invalidateChat(message.getMigrateToChatId().toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all the results of methods of a chat
+	 *
+	 * @param chatId Id of the chat
+	 */
+	public void invalidateChat(String chatId) {
+		entries.values().removeIf(entry -> chatId.equals(entry.chatId));
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private static boolean isChatChange(Message message) {
+		return message.getNewChatMembers() != null && !message.getNewChatMembers().isEmpty()
+				|| message.getLeftChatMember() != null || message.getNewChatTitle() != null
+				|| message.getNewChatPhoto() != null || Boolean.TRUE.equals(message.getDeleteChatPhoto())
+				|| message.getPinnedMessage() != null || message.getMigrateToChatId() != null
+				|| message.getMigrateFromChatId() != null;
+	}
+
+	/**
+	 * Drops the expired results and, if there are still too many, the ones
+	 * expiring first, down to seven eighths of the maximum
+	 */
+	private void evict() {
+		long now = System.nanoTime();
+		entries.values().removeIf(entry -> entry.isExpired(now));
+		int excess = entries.size() - (maxEntries - maxEntries / 8);
+		if (excess <= 0) {
+			return;
+		}
+		long[] expirations = entries.values().stream().filter(entry -> entry.result.isDone())
+				.mapToLong(entry -> entry.expiresAt).sorted().toArray();
+		if (expirations.length > 0) {
+			long cutoff = expirations[Math.min(excess, expirations.length) - 1];
+			entries.values().removeIf(entry -> entry.result.isDone() && entry.expiresAt - cutoff <= 0);
+		}
+	}
+
+	/**
+	 * Sender of a method whose result is not cached
+	 */
+	@FunctionalInterface
+	public interface Loader<T extends Serializable> {
+		T load() throws TelegramApiException;
+	}
+
+	private static final class Entry {
+		private final String chatId;
+		private final CompletableFuture<Serializable> result = new CompletableFuture<>();
+		private volatile long expiresAt;
+
+		private Entry(String chatId) {
+			this.chatId = chatId;
+		}
+
+		private boolean isExpired(long now) {
+			return result.isDone() && now - expiresAt > 0;
+		}
+	}
+}
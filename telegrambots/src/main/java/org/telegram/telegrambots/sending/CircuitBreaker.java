@@ -0,0 +1,139 @@
+package org.telegram.telegrambots.sending;
+
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Circuit breaker that fails requests fast while a server is
+ *          down, instead of letting each of them wait for a timeout.
+ *
+ *          After a number of failures in a row the circuit opens and requests
+ *          are rejected. Once the open time is over, a single request is let
+ *          through as a probe: if it succeeds the circuit closes, otherwise it
+ *          opens again for twice the time, up to a maximum.
+ */
+public class CircuitBreaker {
+	private static final String LOGTAG = "CIRCUITBREAKER";
+
+	/**
+	 * State of a circuit
+	 */
+	public enum State {
+		/**
+		 * Requests are sent
+		 */
+		CLOSED,
+		/**
+		 * Requests are rejected
+		 */
+		OPEN,
+		/**
+		 * A probe is sent and the other requests are rejected
+		 */
+		HALF_OPEN
+	}
+
+	private final String name;
+	private final int failureThreshold;
+	private final long minOpenNanos;
+	private final long maxOpenNanos;
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt;
+	private long openNanos;
+	private boolean probing;
+	private long rejected;
+	private long opened;
+
+	/**
+	 * @param name             Name of the circuit, for the logs
+	 * @param failureThreshold Failures in a row that open the circuit
+	 * @param minOpen          Time the circuit stays open the first time
+	 * @param maxOpen          Maximum time the circuit stays open
+	 * @param unit             Unit of the times
+	 */
+	public CircuitBreaker(String name, int failureThreshold, long minOpen, long maxOpen, TimeUnit unit) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.minOpenNanos = unit.toNanos(minOpen);
+		this.maxOpenNanos = unit.toNanos(maxOpen);
+		this.openNanos = minOpenNanos;
+	}
+
+	/**
+	 * @return True if a request can be sent. It must then be reported with
+	 *         {@link #onSuccess()}, {@link #onFailure()} or {@link #onCancel()}
+	 */
+	public synchronized boolean allowRequest() {
+		if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+			state = State.HALF_OPEN;
+			probing = false;
+		}
+		if (state == State.CLOSED) {
+			return true;
+		}
+		if (state == State.HALF_OPEN && !probing) {
+			probing = true;
+			return true;
+		}
+		rejected++;
+		return false;
+	}
+
+	public synchronized void onSuccess() {
+		failures = 0;
+		if (state == State.HALF_OPEN) {
+			state = State.CLOSED;
+			openNanos = minOpenNanos;
+			BotLogger.info(LOGTAG, "Circuit of " + name + " closed");
+		}
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			open(Math.min(maxOpenNanos, openNanos * 2));
+		} else if (state == State.CLOSED && ++failures >= failureThreshold) {
+			open(minOpenNanos);
+		}
+	}
+
+	/**
+	 * Reports a request allowed but not sent
+	 */
+	public synchronized void onCancel() {
+		if (state == State.HALF_OPEN) {
+			probing = false;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Number of requests rejected
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Number of times the circuit opened after being closed
+	 */
+	public synchronized long getOpened() {
+		return opened;
+	}
+
+	private void open(long nanos) {
+		if (state == State.CLOSED) {
+			opened++;
+		}
+		state = State.OPEN;
+		openedAt = System.nanoTime();
+		openNanos = nanos;
+		failures = 0;
+		BotLogger.warn(LOGTAG, "Circuit of " + name + " open for " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+	}
+}
@@ -0,0 +1,139 @@
+package org.telegram.telegrambots.sending;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @version 1.0 Limit of the requests in flight that adapts to how the server
+ *          copes with them (additive increase, multiplicative decrease).
+ *
+ *          While requests succeed quickly and the limit is in use, it grows by
+ *          about one request per round of requests. A request that fails, is
+ *          rate limited or is slower than the latency threshold shrinks it by
+ *          the backoff ratio. Only requests started after the last decrease
+ *          can decrease it again, so a burst of failures of the same round
+ *          counts once.
+ */
+public class ConcurrencyLimiter {
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final Object lock = new Object();
+	private final int maxLimit;
+	private final long latencyThresholdNanos;
+	private double limit;
+	private int inFlight;
+	private long lastDecrease;
+	private long rejected;
+	private long decreases;
+
+	/**
+	 * @param initialLimit     Requests allowed in flight at first
+	 * @param maxLimit         Maximum requests allowed in flight
+	 * @param latencyThreshold Latency above which a request counts as a sign of
+	 *                         overload
+	 * @param unit             Unit of the latency
+	 */
+	public ConcurrencyLimiter(int initialLimit, int maxLimit, long latencyThreshold, TimeUnit unit) {
+		if (initialLimit <= 0 || maxLimit < initialLimit) {
+			throw new IllegalArgumentException("Limits must be positive and the initial one not above the maximum");
+		}
+		this.limit = initialLimit;
+		this.maxLimit = maxLimit;
+		this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+		this.lastDecrease = System.nanoTime();
+	}
+
+	/**
+	 * Waits until a request can be sent
+	 *
+	 * @param timeout Longest time to wait
+	 * @param unit    Unit of the timeout
+	 * @return True if the request can be sent, false if the time ran out
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock) {
+			while (inFlight >= (int) limit) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					rejected++;
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+			inFlight++;
+			return true;
+		}
+	}
+
+	/**
+	 * Releases a request and adapts the limit to its outcome
+	 *
+	 * @param startedAt  Time the request was sent, from {@link System#nanoTime()}
+	 * @param overloaded True if it failed or was rate limited
+	 */
+	public void release(long startedAt, boolean overloaded) {
+		long now = System.nanoTime();
+		synchronized (lock) {
+			int wasInFlight = inFlight--;
+			if (overloaded || now - startedAt > latencyThresholdNanos) {
+				if (startedAt - lastDecrease > 0) {
+					limit = Math.max(1, limit * BACKOFF_RATIO);
+					lastDecrease = now;
+					decreases++;
+				}
+			} else if (wasInFlight * 2 >= (int) limit) {
+				// Only grows while it is in use
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Releases a request that was not sent, without adapting the limit
+	 */
+	public void cancel() {
+		synchronized (lock) {
+			inFlight--;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Number of requests allowed in flight now
+	 */
+	public int getLimit() {
+		synchronized (lock) {
+			return (int) limit;
+		}
+	}
+
+	/**
+	 * Number of requests in flight
+	 */
+	public int getInFlight() {
+		synchronized (lock) {
+			return inFlight;
+		}
+	}
+
+	/**
+	 * Number of requests that waited too long to be sent
+	 */
+	public long getRejected() {
+		synchronized (lock) {
+			return rejected;
+		}
+	}
+
+	/**
+	 * Number of times the limit decreased
+	 */
+	public long getDecreases() {
+		synchronized (lock) {
+			return decreases;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * @author agent
+ * @version 1.0 Coalesces the edits of a message sent in quick succession.
+ *
+ *          Edits of the same message (by chat and message id, or inline
+ *          message id) are sent at most once per interval, whether they change
+ *          its text or its keyboard. While an edit is waiting, a newer one is
+ *          merged into it and the futures of both complete with the result of
+ *          the one finally sent: a new keyboard is applied to a waiting text
+ *          edit, and a text edit, which also sets the keyboard, replaces any
+ *          waiting edit. An edit that leaves the text and keyboard of the
+ *          message as the last edit sent set them is not sent at all, as
+ *          Telegram would only answer "message is not modified"; its future
+ *          completes with the previous result.
+ */
+public class EditMessageCoalescer {
+	/**
+	 * Messages whose last edit is remembered to detect unchanged edits
+	 */
+	private static final int MAX_REMEMBERED = 10000;
+	/**
+	 * Fields of a text edit that are not part of the text it sets
+	 */
+	private static final List<String> TARGET_FIELDS = Arrays.asList("method", "chat_id", "message_id",
+			"inline_message_id", "reply_markup");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AbsSender sender;
+	private final HashedWheelTimer timer;
+	private final long intervalNanos;
+	private final Map<String, PendingEdit> pending = new LinkedHashMap<>();
+	private final Map<String, SentEdit> sent = new LinkedHashMap<String, SentEdit>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SentEdit> eldest) {
+			return size() > MAX_REMEMBERED;
+		}
+	};
+	private final AtomicLong coalescedEdits = new AtomicLong();
+	private final AtomicLong unchangedEdits = new AtomicLong();
+
+	/**
+	 * @param sender   Sender of the edits
+	 * @param timer    Timer to delay the edits
+	 * @param interval Minimum time between two edits of the same message
+	 * @param unit     Unit of the interval
+	 */
+	public EditMessageCoalescer(AbsSender sender, HashedWheelTimer timer, long interval, TimeUnit unit) {
+		this.sender = sender;
+		this.timer = timer;
+		this.intervalNanos = unit.toNanos(interval);
+	}
+
+	/**
+	 * Edits the text of a message
+	 *
+	 * @param editMessageText Edit to send
+	 * @return Future completed with the result of the edit finally sent
+	 */
+	public CompletableFuture<Serializable> edit(EditMessageText editMessageText) {
+		return enqueue(getKey(editMessageText.getChatId(), editMessageText.getMessageId(),
+				editMessageText.getInlineMessageId()), editMessageText);
+	}
+
+	/**
+	 * Edits the inline keyboard of a message
+	 *
+	 * @param editMessageReplyMarkup Edit to send
+	 * @return Future completed with the result of the edit finally sent
+	 */
+	public CompletableFuture<Serializable> edit(EditMessageReplyMarkup editMessageReplyMarkup) {
+		return enqueue(getKey(editMessageReplyMarkup.getChatId(), editMessageReplyMarkup.getMessageId(),
+				editMessageReplyMarkup.getInlineMessageId()), editMessageReplyMarkup);
+	}
+
+	/**
+	 * Number of edits replaced by a newer one before being sent
+	 */
+	public long getCoalescedEdits() {
+		return coalescedEdits.get();
+	}
+
+	/**
+	 * Number of edits not sent because they didn't change the message
+	 */
+	public long getUnchangedEdits() {
+		return unchangedEdits.get();
+	}
+
+	private CompletableFuture<Serializable> enqueue(String key, BotApiMethod<Serializable> method) {
+		CompletableFuture<Serializable> future = new CompletableFuture<>();
+		synchronized (this) {
+			PendingEdit edit = pending.get(key);
+			if (edit != null) {
+				edit.method = merge(edit.method, method);
+				edit.futures.add(future);
+				coalescedEdits.incrementAndGet();
+				return future;
+			}
+			edit = new PendingEdit(method, future);
+			pending.put(key, edit);
+			SentEdit last = sent.get(key);
+			long delay = last == null ? 0 : last.time + intervalNanos - System.nanoTime();
+			timer.newTimeout(() -> flush(key), Math.max(delay, 0), TimeUnit.NANOSECONDS);
+		}
+		return future;
+	}
+
+	private void flush(String key) {
+		PendingEdit edit;
+		String text;
+		String markup;
+		synchronized (this) {
+			edit = pending.remove(key);
+			if (edit == null) {
+				return;
+			}
+			SentEdit last = sent.get(key);
+			markup = getMarkup(edit.method);
+			// A new keyboard keeps the text set by the last edit
+			text = edit.method instanceof EditMessageText ? getText((EditMessageText) edit.method)
+					: last == null ? null : last.text;
+			if (last != null && text != null && markup != null && text.equals(last.text)
+					&& markup.equals(last.markup)) {
+				unchangedEdits.incrementAndGet();
+				edit.complete(last.result);
+				return;
+			}
+			// Reserve the slot now so edits arriving meanwhile wait the interval.
+			// The content is unknown until Telegram answers
+			sent.put(key, new SentEdit(null, null, null, System.nanoTime()));
+		}
+
+		try {
+			sender.executeAsync(edit.method, new SentCallback<Serializable>() {
+				@Override
+				public void onResult(BotApiMethod<Serializable> method, Serializable response) {
+					synchronized (EditMessageCoalescer.this) {
+						sent.put(key, new SentEdit(text, markup, response, System.nanoTime()));
+					}
+					edit.complete(response);
+				}
+
+				@Override
+				public void onError(BotApiMethod<Serializable> method, TelegramApiRequestException apiException) {
+					edit.fail(apiException);
+				}
+
+				@Override
+				public void onException(BotApiMethod<Serializable> method, Exception exception) {
+					edit.fail(exception);
+				}
+			});
+		} catch (TelegramApiException e) {
+			edit.fail(e);
+		}
+	}
+
+	/**
+	 * @return Edit with the same effect as the waiting one followed by the new
+	 *         one
+	 */
+	private BotApiMethod<Serializable> merge(BotApiMethod<Serializable> waiting, BotApiMethod<Serializable> edit) {
+		if (waiting instanceof EditMessageText && edit instanceof EditMessageReplyMarkup) {
+			// Copied, as the waiting edit belongs to the caller
+			EditMessageText merged = objectMapper.convertValue(waiting, EditMessageText.class);
+			return merged.setReplyMarkup(((EditMessageReplyMarkup) edit).getReplyMarkup());
+		}
+		return edit;
+	}
+
+	/**
+	 * @return Text, parse mode and preview option set by the edit, as JSON.
+	 *         Null if it can't be serialized, so it is never taken as unchanged
+	 */
+	private String getText(EditMessageText editMessageText) {
+		try {
+			ObjectNode node = objectMapper.valueToTree(editMessageText);
+			node.remove(TARGET_FIELDS);
+			return node.toString();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Keyboard set by the edit, as JSON, empty if it removes it. Null if
+	 *         it can't be serialized
+	 */
+	private String getMarkup(BotApiMethod<Serializable> method) {
+		InlineKeyboardMarkup replyMarkup = method instanceof EditMessageText
+				? ((EditMessageText) method).getReplyMarkup()
+				: ((EditMessageReplyMarkup) method).getReplyMarkup();
+		if (replyMarkup == null) {
+			return "";
+		}
+		try {
+			return objectMapper.valueToTree(replyMarkup).toString();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static String getKey(String chatId, Integer messageId, String inlineMessageId) {
+		if (inlineMessageId != null) {
+			return inlineMessageId;
+		}
+		return chatId + ":" + messageId;
+	}
+
+	private static final class PendingEdit {
+		private final List<CompletableFuture<Serializable>> futures = new ArrayList<>(1);
+		private BotApiMethod<Serializable> method;
+
+		private PendingEdit(BotApiMethod<Serializable> method, CompletableFuture<Serializable> future) {
+			this.method = method;
+			this.futures.add(future);
+		}
+
+		private void complete(Serializable result) {
+			for (CompletableFuture<Serializable> future : futures) {
+				future.complete(result);
+			}
+		}
+
+		private void fail(Exception exception) {
+			for (CompletableFuture<Serializable> future : futures) {
+				future.completeExceptionally(exception);
+			}
+		}
+	}
+
+	private static final class SentEdit {
+		private final String text;
+		private final String markup;
+		private final Serializable result;
+		private final long time;
+
+		private SentEdit(String text, String markup, Serializable result, long time) {
+			this.text = text;
+			this.markup = markup;
+			this.result = result;
+			this.time = time;
+		}
+	}
+}
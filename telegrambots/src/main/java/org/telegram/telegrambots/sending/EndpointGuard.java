@@ -0,0 +1,175 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @version 1.0 Protection of a Bot API endpoint during outages, shared by all
+ *          the bots sending to the same base url.
+ *
+ *          Requests go through a {@link ConcurrencyLimiter}, so they don't pile
+ *          up on a slow server, and a {@link CircuitBreaker}, so they fail fast
+ *          while it is down. Requests that can't be sent fail with an
+ *          IOException, like requests that can't reach the server.
+ *
+ *          Requests failing to connect, timing out or answered with a server
+ *          error count as failures. Rate limited requests only decrease the
+ *          concurrency limit.
+ */
+public class EndpointGuard {
+	private static final Map<String, EndpointGuard> GUARDS = new ConcurrentHashMap<>();
+
+	private final String baseUrl;
+	private final ConcurrencyLimiter concurrencyLimiter;
+	private final CircuitBreaker circuitBreaker;
+	private volatile long maxWaitNanos = TimeUnit.SECONDS.toNanos(10);
+
+	/**
+	 * Gets the guard shared by the bots sending to a base url, created with the
+	 * default settings on first use
+	 *
+	 * @param baseUrl Base url of the Bot API
+	 * @return Guard of the base url
+	 */
+	public static EndpointGuard forBaseUrl(String baseUrl) {
+		return GUARDS.computeIfAbsent(baseUrl, EndpointGuard::new);
+	}
+
+	/**
+	 * Replaces the guard shared by the bots sending to its base url, for
+	 * example to change its settings
+	 *
+	 * @param guard Guard to share
+	 */
+	public static void register(EndpointGuard guard) {
+		GUARDS.put(guard.baseUrl, guard);
+	}
+
+	/**
+	 * Creates a guard with the default settings: up to 100 requests in flight
+	 * starting with 10, 5 seconds of latency threshold, and a circuit opening
+	 * after 5 failures for 5 seconds to 2 minutes
+	 *
+	 * @param baseUrl Base url of the Bot API
+	 */
+	public EndpointGuard(String baseUrl) {
+		this(baseUrl, new ConcurrencyLimiter(10, 100, 5, TimeUnit.SECONDS),
+				new CircuitBreaker(baseUrl, 5, 5, 120, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * @param baseUrl            Base url of the Bot API
+	 * @param concurrencyLimiter Limit of the requests in flight
+	 * @param circuitBreaker     Circuit breaker of the requests
+	 */
+	public EndpointGuard(String baseUrl, ConcurrencyLimiter concurrencyLimiter, CircuitBreaker circuitBreaker) {
+		this.baseUrl = baseUrl;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Waits until a request can be sent
+	 *
+	 * @return Permit of the request, to report its outcome
+	 * @throws IOException If the circuit is open or the request waited too long
+	 */
+	public Permit acquire() throws IOException {
+		if (!circuitBreaker.allowRequest()) {
+			throw new IOException("Circuit of " + baseUrl + " is open");
+		}
+		boolean acquired;
+		try {
+			acquired = concurrencyLimiter.acquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			circuitBreaker.onCancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting to send a request");
+		}
+		if (!acquired) {
+			circuitBreaker.onCancel();
+			throw new IOException("Too many requests in flight to " + baseUrl);
+		}
+		return new Permit(System.nanoTime());
+	}
+
+	/**
+	 * @param maxWait Longest time a request waits to be sent, 10 seconds by
+	 *                default
+	 * @param unit    Unit of the time
+	 */
+	public void setMaxWait(long maxWait, TimeUnit unit) {
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Permit of a request being sent. Only the first outcome reported counts
+	 */
+	public final class Permit {
+		private final long startedAt;
+		private boolean done;
+
+		private Permit(long startedAt) {
+			this.startedAt = startedAt;
+		}
+
+		/**
+		 * Reports a request answered by the server
+		 *
+		 * @param status HTTP status of the answer
+		 */
+		public synchronized void complete(int status) {
+			if (done) {
+				return;
+			}
+			done = true;
+			concurrencyLimiter.release(startedAt, status == 429 || status >= 500);
+			if (status >= 500) {
+				circuitBreaker.onFailure();
+			} else {
+				circuitBreaker.onSuccess();
+			}
+		}
+
+		/**
+		 * Reports a request that couldn't reach the server or timed out
+		 */
+		public synchronized void fail() {
+			if (done) {
+				return;
+			}
+			done = true;
+			concurrencyLimiter.release(startedAt, true);
+			circuitBreaker.onFailure();
+		}
+
+		/**
+		 * Reports a request that was not sent, or whose outcome says nothing
+		 * about the server
+		 */
+		public synchronized void cancel() {
+			if (done) {
+				return;
+			}
+			done = true;
+			concurrencyLimiter.cancel();
+			circuitBreaker.onCancel();
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Write ahead log of the methods of an {@link OutboundQueue}.
+ *
+ *          Like {@link SendJournal}, each line is a record, fields separated by
+ *          tabs: "Q id token class json" when a method is queued, "D id" when
+ *          it is delivered and "T token" for the idempotency token of a method
+ *          delivered before the last compaction. Records are appended by a
+ *          writer thread that commits every batch with a single fsync, so
+ *          callers waiting for their records share the cost of the sync. A
+ *          record cut by a crash is truncated when the log is opened, so new
+ *          records are not appended to it.
+ */
+class OutboundLog implements Closeable {
+	private static final String LOGTAG = "OUTBOUNDLOG";
+	private static final String QUEUED = "Q";
+	private static final String DELIVERED = "D";
+	private static final String TOKEN = "T";
+	private static final int MIN_COMPACTION = 10000;
+
+	private final File file;
+	private final Object lock = new Object();
+	private List<Append> batch = new ArrayList<>();
+	private FileChannel channel;
+	private Thread writer;
+	private Compaction compaction;
+	private int records;
+	private boolean closed;
+
+	OutboundLog(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the log and starts the writer thread
+	 *
+	 * @param compaction Supplier of the records still needed, to rewrite the
+	 *                   log once most of it is obsolete
+	 * @return Methods still pending and tokens of the methods delivered
+	 */
+	Recovered open(Compaction compaction) throws IOException {
+		Recovered recovered = new Recovered();
+		records = 0;
+		if (file.exists()) {
+			SendJournal.truncateTornRecord(file);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					readRecord(line, recovered);
+					records++;
+				}
+			}
+		}
+		this.compaction = compaction;
+		channel = openChannel();
+		writer = new Thread(this::write, "Telegram Outbound Log");
+		writer.setDaemon(true);
+		writer.start();
+		return recovered;
+	}
+
+	/**
+	 * Appends a queued method
+	 *
+	 * @return Future completed once the record is synced to disk
+	 */
+	CompletableFuture<Void> queued(Entry entry) {
+		return append(queuedRecord(entry), new CompletableFuture<>());
+	}
+
+	/**
+	 * Appends the delivery of a method. It is not waited for, a method whose
+	 * delivery is lost in a crash is sent again
+	 */
+	void delivered(long id) {
+		append(DELIVERED + '\t' + id + '\n', null);
+	}
+
+	@Override
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		if (writer != null) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private CompletableFuture<Void> append(String record, CompletableFuture<Void> synced) {
+		synchronized (lock) {
+			if (closed) {
+				IOException exception = new IOException("Outbound log " + file + " is closed");
+				if (synced != null) {
+					synced.completeExceptionally(exception);
+				}
+				return synced;
+			}
+			batch.add(new Append(record, synced));
+			if (batch.size() == 1) {
+				lock.notifyAll();
+			}
+		}
+		return synced;
+	}
+
+	private void write() {
+		while (true) {
+			List<Append> appends;
+			synchronized (lock) {
+				while (batch.isEmpty() && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (batch.isEmpty()) {
+					break;
+				}
+				appends = batch;
+				batch = new ArrayList<>();
+			}
+			commit(appends);
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			BotLogger.severe(LOGTAG, e);
+		}
+	}
+
+	private void commit(List<Append> appends) {
+		StringBuilder records = new StringBuilder();
+		for (Append append : appends) {
+			records.append(append.record);
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+			this.records += appends.size();
+		} catch (IOException e) {
+			BotLogger.severe(LOGTAG, e);
+			for (Append append : appends) {
+				if (append.synced != null) {
+					append.synced.completeExceptionally(e);
+				}
+			}
+			return;
+		}
+		for (Append append : appends) {
+			if (append.synced != null) {
+				append.synced.complete(null);
+			}
+		}
+		compactIfNeeded();
+	}
+
+	/**
+	 * Rewrites the log with only the pending methods and the tokens still
+	 * remembered, if most of it is obsolete
+	 */
+	private void compactIfNeeded() {
+		if (records < MIN_COMPACTION) {
+			return;
+		}
+		Collection<Entry> pending = compaction.getPending();
+		Collection<String> tokens = compaction.getDeliveredTokens();
+		int needed = pending.size() + tokens.size();
+		if (records < needed * 4) {
+			return;
+		}
+		File compacted = new File(file.getPath() + ".tmp");
+		try {
+			StringBuilder content = new StringBuilder();
+			for (String token : tokens) {
+				content.append(TOKEN).append('\t').append(token).append('\n');
+			}
+			for (Entry entry : pending) {
+				content.append(queuedRecord(entry));
+			}
+			try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				out.force(false);
+			}
+			channel.close();
+			Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			channel = openChannel();
+			records = needed;
+		} catch (IOException e) {
+			BotLogger.severe(LOGTAG, e);
+			try {
+				if (!channel.isOpen()) {
+					channel = openChannel();
+				}
+			} catch (IOException reopen) {
+				BotLogger.severe(LOGTAG, reopen);
+			}
+		}
+	}
+
+	private FileChannel openChannel() throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	private static String queuedRecord(Entry entry) {
+		return QUEUED + '\t' + entry.id + '\t' + (entry.token == null ? "" : entry.token) + '\t' + entry.type + '\t'
+				+ entry.json + '\n';
+	}
+
+	private static void readRecord(String line, Recovered recovered) {
+		String[] fields = line.split("\t", 5);
+		try {
+			if (QUEUED.equals(fields[0]) && fields.length == 5) {
+				long id = Long.parseLong(fields[1]);
+				String token = fields[2].isEmpty() ? null : fields[2];
+				recovered.pending.put(id, new Entry(id, token, fields[3], fields[4]));
+			} else if (DELIVERED.equals(fields[0]) && fields.length == 2) {
+				Entry entry = recovered.pending.remove(Long.parseLong(fields[1]));
+				if (entry != null && entry.token != null) {
+					recovered.deliveredTokens.add(entry.token);
+				}
+			} else if (TOKEN.equals(fields[0]) && fields.length == 2) {
+				recovered.deliveredTokens.add(fields[1]);
+			}
+		} catch (NumberFormatException e) {
+			// Truncated record
+		}
+	}
+
+	/**
+	 * Records still needed when the log is compacted
+	 */
+	interface Compaction {
+		Collection<Entry> getPending();
+
+		Collection<String> getDeliveredTokens();
+	}
+
+	/**
+	 * Content of the log when it is opened
+	 */
+	static final class Recovered {
+		final Map<Long, Entry> pending = new LinkedHashMap<>();
+		final Set<String> deliveredTokens = new LinkedHashSet<>();
+	}
+
+	/**
+	 * Queued method as stored in the log
+	 */
+	static final class Entry {
+		final long id;
+		final String token;
+		final String type;
+		final String json;
+
+		Entry(long id, String token, String type, String json) {
+			this.id = id;
+			this.token = token;
+			this.type = type;
+			this.json = json;
+		}
+	}
+
+	private static final class Append {
+		private final String record;
+		private final CompletableFuture<Void> synced;
+
+		private Append(String record, CompletableFuture<Void> synced) {
+			this.record = record;
+			this.synced = synced;
+		}
+	}
+}
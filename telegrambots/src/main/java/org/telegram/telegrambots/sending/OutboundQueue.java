@@ -0,0 +1,300 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Durable queue of methods to send, for the ones that can't be
+ *          lost if the bot dies, like payment confirmations.
+ *
+ *          A method is accepted once it is synced to a write ahead log on
+ *          disk, and is only sent after that. Methods are sent in order at a
+ *          maximum rate and marked as delivered when Telegram answers; methods
+ *          still pending when the bot stops are sent after it starts again.
+ *          Delivery is at least once: a method sent right before a crash may
+ *          be sent again.
+ *
+ *          Methods can carry an idempotency token. A method whose token is
+ *          pending or was delivered recently is not queued again, even across
+ *          restarts.
+ *
+ *          Methods that fail because Telegram could not be reached, that are
+ *          rate limited or that get a server error are retried; methods that
+ *          are not valid or are rejected by Telegram for any other reason
+ *          would fail again, so they are dropped.
+ */
+public class OutboundQueue implements Closeable {
+	private static final String LOGTAG = "OUTBOUNDQUEUE";
+	private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	private static final int MAX_DELIVERED_TOKENS = 100000;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AbsSender sender;
+	private final OutboundLog log;
+	private final long intervalNanos;
+	// By id, so a compaction keeps them in order
+	private final Map<Long, OutboundLog.Entry> pending = new ConcurrentSkipListMap<>();
+	private final BlockingQueue<OutboundLog.Entry> ready = new LinkedBlockingQueue<>();
+	private final Map<String, Long> pendingTokens = new ConcurrentHashMap<>();
+	private final LinkedHashSet<String> deliveredTokens = new LinkedHashSet<>();
+	private final AtomicLong lastId = new AtomicLong();
+	private Thread dispatcher;
+	private volatile boolean started;
+
+	/**
+	 * @param sender       Sender of the methods
+	 * @param logFile      File of the write ahead log
+	 * @param maxPerSecond Maximum number of methods sent per second
+	 */
+	public OutboundQueue(AbsSender sender, File logFile, int maxPerSecond) {
+		this.sender = sender;
+		this.log = new OutboundLog(logFile);
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+	}
+
+	/**
+	 * Reads the log and starts sending the methods still pending
+	 *
+	 * @throws IOException If the log can't be read
+	 */
+	public synchronized void start() throws IOException {
+		if (started) {
+			throw new IllegalStateException("Outbound queue already started");
+		}
+		OutboundLog.Recovered recovered = log.open(new OutboundLog.Compaction() {
+			@Override
+			public Collection<OutboundLog.Entry> getPending() {
+				return new ArrayList<>(pending.values());
+			}
+
+			@Override
+			public Collection<String> getDeliveredTokens() {
+				synchronized (deliveredTokens) {
+					return new ArrayList<>(deliveredTokens);
+				}
+			}
+		});
+		synchronized (deliveredTokens) {
+			deliveredTokens.addAll(recovered.deliveredTokens);
+			trimDeliveredTokens();
+		}
+		for (OutboundLog.Entry entry : recovered.pending.values()) {
+			lastId.accumulateAndGet(entry.id, Math::max);
+			pending.put(entry.id, entry);
+			if (entry.token != null) {
+				pendingTokens.put(entry.token, entry.id);
+			}
+			ready.add(entry);
+		}
+		started = true;
+		dispatcher = new Thread(this::dispatch, "Telegram Outbound");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+		BotLogger.info(LOGTAG, "Recovered " + recovered.pending.size() + " outbound methods");
+	}
+
+	/**
+	 * Queues a method
+	 *
+	 * @param method Method to send
+	 * @return Future completed once the method is synced to disk
+	 */
+	public CompletableFuture<Boolean> enqueue(BotApiMethod<?> method) {
+		return enqueue(method, null);
+	}
+
+	/**
+	 * Queues a method unless another one with the same token is pending or was
+	 * delivered recently
+	 *
+	 * @param method           Method to send
+	 * @param idempotencyToken Token identifying the method, like the id of the
+	 *                         payment it confirms. Null to not check it
+	 * @return Future completed with true once the method is synced to disk, or
+	 *         with false if the token was already used. Completed exceptionally
+	 *         if the method can't be written
+	 */
+	public CompletableFuture<Boolean> enqueue(BotApiMethod<?> method, String idempotencyToken) {
+		if (!started) {
+			throw new IllegalStateException("Outbound queue not started");
+		}
+		if (idempotencyToken != null && (idempotencyToken.isEmpty() || idempotencyToken.indexOf('\t') >= 0
+				|| idempotencyToken.indexOf('\n') >= 0 || idempotencyToken.indexOf('\r') >= 0)) {
+			throw new IllegalArgumentException("Idempotency tokens must be non empty and single line without tabs");
+		}
+		String json;
+		try {
+			json = objectMapper.writeValueAsString(method);
+		} catch (JsonProcessingException e) {
+			CompletableFuture<Boolean> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+		OutboundLog.Entry entry = new OutboundLog.Entry(lastId.incrementAndGet(), idempotencyToken,
+				method.getClass().getName(), json);
+		if (idempotencyToken != null) {
+			synchronized (deliveredTokens) {
+				if (deliveredTokens.contains(idempotencyToken)
+						|| pendingTokens.putIfAbsent(idempotencyToken, entry.id) != null) {
+					return CompletableFuture.completedFuture(false);
+				}
+			}
+		}
+		// Pending before being logged, so a compaction can't miss it
+		pending.put(entry.id, entry);
+		return log.queued(entry).handle((synced, exception) -> {
+			if (exception != null) {
+				forget(entry);
+				throw new IllegalStateException("Unable to log method", exception);
+			}
+			ready.add(entry);
+			return true;
+		});
+	}
+
+	/**
+	 * Number of methods queued and not delivered yet
+	 */
+	public int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops sending methods. Pending ones stay in the log
+	 */
+	@Override
+	public synchronized void close() {
+		started = false;
+		if (dispatcher != null) {
+			dispatcher.interrupt();
+			try {
+				dispatcher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		log.close();
+	}
+
+	private void dispatch() {
+		long nextSend = System.nanoTime();
+		try {
+			while (started) {
+				OutboundLog.Entry entry = ready.take();
+				long retryMillis;
+				do {
+					long wait = nextSend - System.nanoTime();
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+					nextSend = Math.max(nextSend, System.nanoTime()) + intervalNanos;
+					retryMillis = send(entry);
+					if (retryMillis > 0) {
+						// In order, so later methods wait for this one
+						TimeUnit.MILLISECONDS.sleep(retryMillis);
+					}
+				} while (retryMillis > 0 && started);
+			}
+		} catch (InterruptedException e) {
+			BotLogger.debug(LOGTAG, e);
+		}
+	}
+
+	/**
+	 * Sends a method
+	 *
+	 * @return Milliseconds to wait before retrying it, 0 if it is done
+	 */
+	@SuppressWarnings("unchecked")
+	private long send(OutboundLog.Entry entry) {
+		BotApiMethod<Serializable> method;
+		try {
+			method = (BotApiMethod<Serializable>) objectMapper.readValue(entry.json, Class.forName(entry.type));
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			BotLogger.severe("Unable to read outbound method " + entry.id, LOGTAG, e);
+			delivered(entry);
+			return 0;
+		}
+		try {
+			sender.execute(method);
+			delivered(entry);
+			return 0;
+		} catch (TelegramApiRequestException e) {
+			Integer errorCode = e.getErrorCode();
+			if (errorCode != null && errorCode >= 500) {
+				BotLogger.warn(LOGTAG, e);
+				return RETRY_MILLIS;
+			}
+			if (errorCode != null && errorCode == 429) {
+				Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+				return retryAfter == null ? RETRY_MILLIS : TimeUnit.SECONDS.toMillis(retryAfter);
+			}
+			BotLogger.severe("Outbound method " + entry.id + " rejected, dropping it", LOGTAG, e);
+			delivered(entry);
+			return 0;
+		} catch (TelegramApiException e) {
+			// Only failures to reach Telegram are worth retrying, anything else,
+			// like a method failing validation, fails the same way every time
+			if (e.getCause() instanceof IOException || e.getCause() instanceof InterruptedException) {
+				BotLogger.warn(LOGTAG, e);
+				return RETRY_MILLIS;
+			}
+			BotLogger.severe("Outbound method " + entry.id + " can't be sent, dropping it", LOGTAG, e);
+			delivered(entry);
+			return 0;
+		} catch (RuntimeException e) {
+			BotLogger.severe("Outbound method " + entry.id + " can't be sent, dropping it", LOGTAG, e);
+			delivered(entry);
+			return 0;
+		}
+	}
+
+	private void delivered(OutboundLog.Entry entry) {
+		if (entry.token != null) {
+			synchronized (deliveredTokens) {
+				deliveredTokens.add(entry.token);
+				trimDeliveredTokens();
+			}
+		}
+		forget(entry);
+		log.delivered(entry.id);
+	}
+
+	private void forget(OutboundLog.Entry entry) {
+		pending.remove(entry.id);
+		if (entry.token != null) {
+			pendingTokens.remove(entry.token, entry.id);
+		}
+	}
+
+	private void trimDeliveredTokens() {
+		for (Iterator<String> it = deliveredTokens.iterator(); deliveredTokens.size() > MAX_DELIVERED_TOKENS;) {
+			it.next();
+			it.remove();
+		}
+	}
+}
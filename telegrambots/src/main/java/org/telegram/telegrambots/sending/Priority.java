@@ -0,0 +1,22 @@
+package org.telegram.telegrambots.sending;
+
+/**
+ * @author agent
+ * @version 1.0 Priority classes of the requests sent to Telegram, from
+ *          highest to lowest
+ */
+public enum Priority {
+	/**
+	 * Answers a user is waiting for, like AnswerCallbackQuery or
+	 * AnswerInlineQuery
+	 */
+	INTERACTIVE,
+	/**
+	 * Default class of the requests
+	 */
+	NORMAL,
+	/**
+	 * Requests that can wait, like broadcasts
+	 */
+	BULK
+}
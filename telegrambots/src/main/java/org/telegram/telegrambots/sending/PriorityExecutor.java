@@ -0,0 +1,245 @@
+package org.telegram.telegrambots.sending;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Executor with a lane of tasks per {@link Priority}.
+ *
+ *          Idle threads take the oldest task of the highest priority lane, so
+ *          interactive tasks overtake the bulk ones queued. With more than one
+ *          thread, one of them is kept for interactive tasks. A task waiting
+ *          longer than the starvation time is taken first whatever its lane,
+ *          so low lanes always progress.
+ *
+ *          Tasks submitted without a priority go to the normal lane.
+ */
+public class PriorityExecutor extends AbstractExecutorService {
+	private static final String LOGTAG = "PRIORITYEXECUTOR";
+
+	private final Object lock = new Object();
+	private final ArrayDeque<Task>[] lanes;
+	private final int threads;
+	private final long starvationNanos;
+	private final String name;
+	private final List<Thread> workers = new ArrayList<>();
+	private int busyNonInteractive;
+	private boolean shutdown;
+
+	/**
+	 * @param threads    Number of threads
+	 * @param starvation Time after which a task is taken whatever its lane
+	 * @param unit       Unit of the starvation time
+	 * @param name       Prefix of the names of the threads
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public PriorityExecutor(int threads, long starvation, TimeUnit unit, String name) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Threads must be positive");
+		}
+		this.threads = threads;
+		this.starvationNanos = unit.toNanos(starvation);
+		this.name = name;
+		this.lanes = new ArrayDeque[Priority.values().length];
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new ArrayDeque<>();
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		execute(command, Priority.NORMAL);
+	}
+
+	/**
+	 * Executes a task in the lane of its priority
+	 *
+	 * @param command  Task to execute
+	 * @param priority Priority of the task
+	 */
+	public void execute(Runnable command, Priority priority) {
+		synchronized (lock) {
+			if (shutdown) {
+				throw new RejectedExecutionException("Executor is shut down");
+			}
+			lanes[priority.ordinal()].add(new Task(command, priority, System.nanoTime()));
+			// Threads are started on demand, like a fixed thread pool
+			if (workers.size() < threads) {
+				Thread worker = new Thread(this::work, name + " " + (workers.size() + 1));
+				workers.add(worker);
+				worker.start();
+			}
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return Number of tasks waiting in a lane
+	 */
+	public int getQueued(Priority priority) {
+		synchronized (lock) {
+			return lanes[priority.ordinal()].size();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> pending = new ArrayList<>();
+		synchronized (lock) {
+			shutdown = true;
+			for (ArrayDeque<Task> lane : lanes) {
+				for (Task task : lane) {
+					pending.add(task.command);
+				}
+				lane.clear();
+			}
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			lock.notifyAll();
+		}
+		return pending;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		synchronized (lock) {
+			return shutdown;
+		}
+	}
+
+	@Override
+	public boolean isTerminated() {
+		synchronized (lock) {
+			if (!shutdown) {
+				return false;
+			}
+			for (Thread worker : workers) {
+				if (worker.isAlive()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		List<Thread> current;
+		synchronized (lock) {
+			current = new ArrayList<>(workers);
+		}
+		for (Thread worker : current) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+		}
+		return isTerminated();
+	}
+
+	private void work() {
+		while (true) {
+			Task task;
+			synchronized (lock) {
+				while ((task = take()) == null) {
+					if (shutdown && isEmpty()) {
+						return;
+					}
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						if (shutdown) {
+							return;
+						}
+					}
+				}
+				if (task.priority != Priority.INTERACTIVE) {
+					busyNonInteractive++;
+				}
+			}
+			try {
+				task.command.run();
+			} catch (RuntimeException e) {
+				// A failed task doesn't stop the thread
+				BotLogger.severe(LOGTAG, e);
+			} finally {
+				if (task.priority != Priority.INTERACTIVE) {
+					synchronized (lock) {
+						busyNonInteractive--;
+						lock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Next task to run, null if there is none this thread can take
+	 */
+	private Task take() {
+		long now = System.nanoTime();
+		ArrayDeque<Task> starving = null;
+		for (int i = 1; i < lanes.length; i++) {
+			Task head = lanes[i].peek();
+			if (head != null && now - head.queuedAt > starvationNanos
+					&& (starving == null || head.queuedAt < starving.peek().queuedAt)) {
+				starving = lanes[i];
+			}
+		}
+		if (starving != null) {
+			return starving.poll();
+		}
+		if (!lanes[Priority.INTERACTIVE.ordinal()].isEmpty()) {
+			return lanes[Priority.INTERACTIVE.ordinal()].poll();
+		}
+		// One thread is kept for interactive tasks
+		if (threads > 1 && busyNonInteractive >= threads - 1) {
+			return null;
+		}
+		for (int i = 1; i < lanes.length; i++) {
+			if (!lanes[i].isEmpty()) {
+				return lanes[i].poll();
+			}
+		}
+		return null;
+	}
+
+	private boolean isEmpty() {
+		for (ArrayDeque<Task> lane : lanes) {
+			if (!lane.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Task {
+		private final Runnable command;
+		private final Priority priority;
+		private final long queuedAt;
+
+		private Task(Runnable command, Priority priority, long queuedAt) {
+			this.command = command;
+			this.priority = priority;
+			this.queuedAt = queuedAt;
+		}
+	}
+}
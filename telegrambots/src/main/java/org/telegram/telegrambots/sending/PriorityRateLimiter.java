@@ -0,0 +1,85 @@
+package org.telegram.telegrambots.sending;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @version 1.0 Token bucket limiting the requests sent per second, where
+ *          waiting requests get tokens by {@link Priority}.
+ *
+ *          A request only takes a token if no request of a higher priority
+ *          is waiting for one, unless it has waited longer than the
+ *          starvation time.
+ */
+public class PriorityRateLimiter {
+	private final Object lock = new Object();
+	private final double permitsPerNano;
+	private final double burst;
+	private final long starvationNanos;
+	private final int[] waiting = new int[Priority.values().length];
+	private double tokens;
+	private long refilledAt;
+
+	/**
+	 * @param permitsPerSecond Requests allowed per second, also the size of a
+	 *                         burst
+	 * @param starvation       Time after which a request takes the next token
+	 *                         whatever its priority
+	 * @param unit             Unit of the starvation time
+	 */
+	public PriorityRateLimiter(double permitsPerSecond, long starvation, TimeUnit unit) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException("Permits per second must be positive");
+		}
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = Math.max(1, permitsPerSecond);
+		this.starvationNanos = unit.toNanos(starvation);
+		this.tokens = burst;
+		this.refilledAt = System.nanoTime();
+	}
+
+	/**
+	 * Waits for a token
+	 *
+	 * @param priority Priority of the request
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public void acquire(Priority priority) throws InterruptedException {
+		long start = System.nanoTime();
+		synchronized (lock) {
+			waiting[priority.ordinal()]++;
+			try {
+				while (true) {
+					long now = System.nanoTime();
+					refill(now);
+					boolean starving = now - start > starvationNanos;
+					if (tokens >= 1 && (starving || !higherWaiting(priority))) {
+						tokens -= 1;
+						// Others may still get a token
+						lock.notifyAll();
+						return;
+					}
+					long wait = tokens >= 1 ? start + starvationNanos - now
+							: (long) Math.ceil((1 - tokens) / permitsPerNano);
+					TimeUnit.NANOSECONDS.timedWait(lock, Math.max(wait, 1));
+				}
+			} finally {
+				waiting[priority.ordinal()]--;
+			}
+		}
+	}
+
+	private boolean higherWaiting(Priority priority) {
+		for (int i = 0; i < priority.ordinal(); i++) {
+			if (waiting[i] > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void refill(long now) {
+		tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerNano);
+		refilledAt = now;
+	}
+}
@@ -0,0 +1,281 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Methods sent at a given time, like reminders or the deletion
+ *          of ephemeral messages, that survive a restart of the bot.
+ *
+ *          Every scheduled method is written to an append only journal before
+ *          being armed in a {@link HashedWheelTimer}, and marked as done once
+ *          Telegram answers. When started, the methods still pending in the
+ *          journal are armed again, and those whose time has passed are sent
+ *          right away. Pending methods are kept as json until they are due, so
+ *          millions of them only cost their text and a timer entry.
+ *
+ *          Methods that fail because Telegram could not be reached, that are
+ *          rate limited or that get a server error are retried later; methods
+ *          that are not valid or are rejected by Telegram for any other reason
+ *          would fail again, so they are dropped.
+ */
+public class ScheduledMessages implements Closeable {
+	private static final String LOGTAG = "SCHEDULEDMESSAGES";
+	private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AbsSender sender;
+	private final HashedWheelTimer timer;
+	private final SendJournal journal;
+	private final Map<Long, Scheduled> pending = new ConcurrentHashMap<>();
+	private final AtomicLong lastId = new AtomicLong();
+	private volatile boolean started;
+
+	/**
+	 * @param sender      Sender of the methods
+	 * @param timer       Timer to wait for them
+	 * @param journalFile File where the pending methods are kept
+	 */
+	public ScheduledMessages(AbsSender sender, HashedWheelTimer timer, File journalFile) {
+		this.sender = sender;
+		this.timer = timer;
+		this.journal = new SendJournal(journalFile);
+	}
+
+	/**
+	 * Reads the journal and arms the methods still pending
+	 *
+	 * @throws IOException If the journal can't be read
+	 */
+	public synchronized void start() throws IOException {
+		if (started) {
+			throw new IllegalStateException("Scheduled messages already started");
+		}
+		Map<Long, SendJournal.Entry> recovered = journal.open();
+		started = true;
+		for (SendJournal.Entry entry : recovered.values()) {
+			lastId.accumulateAndGet(entry.id, Math::max);
+			arm(new Scheduled(entry), entry.due - System.currentTimeMillis());
+		}
+		BotLogger.info(LOGTAG, "Recovered " + recovered.size() + " scheduled methods");
+	}
+
+	/**
+	 * Schedules a method at a given time
+	 *
+	 * @param method Method to send
+	 * @param time   Time to send it, in milliseconds since the epoch
+	 * @return Id of the scheduled method, to cancel it
+	 * @throws IOException If it can't be written to the journal
+	 */
+	public long schedule(BotApiMethod<?> method, long time) throws IOException {
+		if (!started) {
+			throw new IllegalStateException("Scheduled messages not started");
+		}
+		SendJournal.Entry entry = new SendJournal.Entry(lastId.incrementAndGet(), time,
+				method.getClass().getName(), objectMapper.writeValueAsString(method));
+		Scheduled scheduled = new Scheduled(entry);
+		// Pending before being journaled, so a compaction can't miss it
+		pending.put(entry.id, scheduled);
+		try {
+			journal.scheduled(entry);
+		} catch (IOException e) {
+			pending.remove(entry.id);
+			throw e;
+		}
+		arm(scheduled, time - System.currentTimeMillis());
+		return entry.id;
+	}
+
+	/**
+	 * Schedules a method after a delay
+	 *
+	 * @param method Method to send
+	 * @param delay  Delay before sending it
+	 * @param unit   Unit of the delay
+	 * @return Id of the scheduled method, to cancel it
+	 * @throws IOException If it can't be written to the journal
+	 */
+	public long schedule(BotApiMethod<?> method, long delay, TimeUnit unit) throws IOException {
+		return schedule(method, System.currentTimeMillis() + unit.toMillis(delay));
+	}
+
+	/**
+	 * Deletes a message sent by the bot after a delay
+	 *
+	 * @param message Message to delete
+	 * @param delay   Delay before deleting it
+	 * @param unit    Unit of the delay
+	 * @return Id of the scheduled deletion, to cancel it
+	 * @throws IOException If it can't be written to the journal
+	 */
+	public long deleteAfter(Message message, long delay, TimeUnit unit) throws IOException {
+		return schedule(new DeleteMessage(message.getChatId(), message.getMessageId()), delay, unit);
+	}
+
+	/**
+	 * Cancels a scheduled method
+	 *
+	 * @param id Id of the scheduled method
+	 * @return True if it was cancelled, false if it was already sent or didn't
+	 *         exist
+	 * @throws IOException If it can't be written to the journal
+	 */
+	public boolean cancel(long id) throws IOException {
+		Scheduled scheduled = pending.remove(id);
+		if (scheduled == null) {
+			return false;
+		}
+		if (scheduled.timeout != null) {
+			scheduled.timeout.cancel();
+		}
+		journal.done(id);
+		return true;
+	}
+
+	/**
+	 * Number of methods waiting to be sent
+	 */
+	public int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops sending methods. Pending ones stay in the journal.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		started = false;
+		for (Scheduled scheduled : pending.values()) {
+			if (scheduled.timeout != null) {
+				scheduled.timeout.cancel();
+			}
+		}
+		pending.clear();
+		journal.close();
+	}
+
+	private void arm(Scheduled scheduled, long delayMillis) {
+		pending.put(scheduled.entry.id, scheduled);
+		scheduled.timeout = timer.newTimeout(() -> fire(scheduled), Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void fire(Scheduled scheduled) {
+		if (!started || pending.get(scheduled.entry.id) != scheduled) {
+			return;
+		}
+		BotApiMethod<Serializable> method;
+		try {
+			method = (BotApiMethod<Serializable>) objectMapper.readValue(scheduled.entry.json,
+					Class.forName(scheduled.entry.type));
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			BotLogger.severe("Unable to read scheduled method " + scheduled.entry.id, LOGTAG, e);
+			done(scheduled);
+			return;
+		}
+
+		try {
+			sender.executeAsync(method, new SentCallback<Serializable>() {
+				@Override
+				public void onResult(BotApiMethod<Serializable> method, Serializable response) {
+					done(scheduled);
+				}
+
+				@Override
+				public void onError(BotApiMethod<Serializable> method, TelegramApiRequestException apiException) {
+					BotLogger.warn(LOGTAG, apiException);
+					Integer errorCode = apiException.getErrorCode();
+					if (errorCode != null && errorCode == 429) {
+						Integer retryAfter = apiException.getParameters() == null ? null
+								: apiException.getParameters().getRetryAfter();
+						retry(scheduled, retryAfter == null ? RETRY_MILLIS : TimeUnit.SECONDS.toMillis(retryAfter));
+					} else if (errorCode != null && errorCode >= 500) {
+						retry(scheduled, RETRY_MILLIS);
+					} else {
+						done(scheduled);
+					}
+				}
+
+				@Override
+				public void onException(BotApiMethod<Serializable> method, Exception exception) {
+					failed(scheduled, exception);
+				}
+			});
+		} catch (TelegramApiException e) {
+			failed(scheduled, e);
+		}
+	}
+
+	/**
+	 * Retries a method that couldn't reach Telegram. Anything else, like a
+	 * method failing validation, fails the same way every time, so it is
+	 * dropped
+	 */
+	private void failed(Scheduled scheduled, Exception exception) {
+		BotLogger.warn(LOGTAG, exception);
+		if (exception instanceof IOException || exception.getCause() instanceof IOException
+				|| exception.getCause() instanceof InterruptedException) {
+			retry(scheduled, RETRY_MILLIS);
+		} else {
+			done(scheduled);
+		}
+	}
+
+	private void retry(Scheduled scheduled, long delayMillis) {
+		if (started && pending.get(scheduled.entry.id) == scheduled) {
+			arm(scheduled, delayMillis);
+		}
+	}
+
+	private void done(Scheduled scheduled) {
+		if (!pending.remove(scheduled.entry.id, scheduled)) {
+			return;
+		}
+		try {
+			journal.done(scheduled.entry.id);
+			journal.compactIfNeeded(this::getPendingEntries);
+		} catch (IOException e) {
+			// Sent again after a restart
+			BotLogger.severe(LOGTAG, e);
+		}
+	}
+
+	private List<SendJournal.Entry> getPendingEntries() {
+		List<SendJournal.Entry> entries = new ArrayList<>(pending.size());
+		for (Scheduled scheduled : pending.values()) {
+			entries.add(scheduled.entry);
+		}
+		return entries;
+	}
+
+	private static final class Scheduled {
+		private final SendJournal.Entry entry;
+		private volatile HashedWheelTimer.Timeout timeout;
+
+		private Scheduled(SendJournal.Entry entry) {
+			this.entry = entry;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * @author agent
+ * @version 1.0 Append only file of scheduled methods.
+ *
+ *          Each line is a record: "S id due class json" when a method is
+ *          scheduled and "D id" when it is done, fields separated by tabs.
+ *          Replaying the file gives the methods still pending. A line cut by a
+ *          crash is truncated when the journal is opened, so new records are
+ *          not appended to it. The file is rewritten with only the pending
+ *          records once most of it is done records.
+ */
+class SendJournal implements Closeable {
+	private static final String SCHEDULED = "S";
+	private static final String DONE = "D";
+	private static final int MIN_COMPACTION = 10000;
+
+	private final File file;
+	private Writer writer;
+	private int records;
+
+	SendJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the pending records and opens the journal to append new ones
+	 *
+	 * @return Pending records by id, in scheduling order
+	 */
+	synchronized Map<Long, Entry> open() throws IOException {
+		Map<Long, Entry> pending = new LinkedHashMap<>();
+		records = 0;
+		if (file.exists()) {
+			truncateTornRecord(file);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					readRecord(line, pending);
+					records++;
+				}
+			}
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		return pending;
+	}
+
+	synchronized void scheduled(Entry entry) throws IOException {
+		append(SCHEDULED + '\t' + entry.id + '\t' + entry.due + '\t' + entry.type + '\t' + entry.json);
+	}
+
+	synchronized void done(long id) throws IOException {
+		append(DONE + '\t' + id);
+	}
+
+	/**
+	 * Rewrites the journal with only the pending records if most of it is
+	 * obsolete
+	 *
+	 * @param pendingSupplier Supplier of the records still pending, called while
+	 *                        no record can be appended
+	 */
+	synchronized void compactIfNeeded(Supplier<Collection<Entry>> pendingSupplier) throws IOException {
+		if (records < MIN_COMPACTION) {
+			return;
+		}
+		Collection<Entry> pending = pendingSupplier.get();
+		if (records < pending.size() * 4) {
+			return;
+		}
+		File compacted = new File(file.getPath() + ".tmp");
+		try (Writer out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(compacted), StandardCharsets.UTF_8))) {
+			for (Entry entry : pending) {
+				out.write(SCHEDULED + '\t' + entry.id + '\t' + entry.due + '\t' + entry.type + '\t' + entry.json + '\n');
+			}
+		}
+		writer.close();
+		Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		records = pending.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private void append(String record) throws IOException {
+		if (writer == null) {
+			throw new IOException("Journal " + file + " is not open");
+		}
+		// Flushed on every record so it survives a crash of the process
+		writer.write(record);
+		writer.write('\n');
+		writer.flush();
+		records++;
+	}
+
+	/**
+	 * Truncates a file of records after its last complete line, dropping the
+	 * record a crash may have cut
+	 */
+	static void truncateTornRecord(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			long end = size;
+			long complete = 0;
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			while (end > 0 && complete == 0) {
+				int length = (int) Math.min(buffer.capacity(), end);
+				buffer.clear();
+				buffer.limit(length);
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, end - length + buffer.position()) < 0) {
+						throw new IOException("Unexpected end of " + file);
+					}
+				}
+				for (int i = length - 1; i >= 0; i--) {
+					if (buffer.get(i) == '\n') {
+						complete = end - length + i + 1;
+						break;
+					}
+				}
+				end -= length;
+			}
+			if (complete < size) {
+				channel.truncate(complete);
+				channel.force(false);
+			}
+		}
+	}
+
+	private static void readRecord(String line, Map<Long, Entry> pending) {
+		String[] fields = line.split("\t", 5);
+		try {
+			if (SCHEDULED.equals(fields[0]) && fields.length == 5) {
+				long id = Long.parseLong(fields[1]);
+				pending.put(id, new Entry(id, Long.parseLong(fields[2]), fields[3], fields[4]));
+			} else if (DONE.equals(fields[0]) && fields.length == 2) {
+				pending.remove(Long.parseLong(fields[1]));
+			}
+		} catch (NumberFormatException e) {
+			// Truncated record
+		}
+	}
+
+	/**
+	 * Scheduled method as stored in the journal
+	 */
+	static final class Entry {
+		final long id;
+		final long due;
+		final String type;
+		final String json;
+
+		Entry(long id, long due, String type, String json) {
+			this.id = id;
+			this.due = due;
+			this.type = type;
+			this.json = json;
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package org.telegram.telegrambots.sending;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.api.methods.ActionType;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
+
+/**
+ * @author agent
+ * @version 1.0 Sends methods later and keeps chat actions alive, all served
+ *          by a single {@link HashedWheelTimer} instead of a task per chat.
+ *
+ *          A chat action is only shown for a few seconds, so while a long job
+ *          runs it is sent again periodically. Each chat has at most one
+ *          heartbeat: jobs of the same chat share it and it stops when the
+ *          last of them closes its handle.
+ *          <pre>
+ * try (SendScheduler.ChatAction typing = scheduler.startChatAction(chatId, ActionType.TYPING)) {
+ *     longJob();
+ * }
+ *          </pre>
+ *
+ *          Methods are sent through {@link AbsSender#executeAsync}, so the
+ *          timer thread never waits for Telegram.
+ */
+public class SendScheduler {
+	private static final String LOGTAG = "SENDSCHEDULER";
+	/**
+	 * Telegram shows a chat action for 5 seconds, it is refreshed a bit before
+	 */
+	private static final long DEFAULT_HEARTBEAT_MILLIS = 4500;
+
+	private final AbsSender sender;
+	private final HashedWheelTimer timer;
+	private final long heartbeatNanos;
+	private final Map<String, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+	public SendScheduler(AbsSender sender, HashedWheelTimer timer) {
+		this(sender, timer, DEFAULT_HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param sender    Sender of the methods
+	 * @param timer     Timer to schedule them
+	 * @param heartbeat Time between two chat actions sent to a chat
+	 * @param unit      Unit of the heartbeat
+	 */
+	public SendScheduler(AbsSender sender, HashedWheelTimer timer, long heartbeat, TimeUnit unit) {
+		this.sender = sender;
+		this.timer = timer;
+		this.heartbeatNanos = unit.toNanos(heartbeat);
+	}
+
+	/**
+	 * Starts showing a chat action until the handle is closed. If the chat
+	 * already has a heartbeat, it is shared and its action replaced.
+	 *
+	 * @param chatId Chat to show the action in
+	 * @param action Action to show
+	 * @return Handle to stop the action
+	 */
+	public ChatAction startChatAction(String chatId, ActionType action) {
+		while (true) {
+			Heartbeat heartbeat = heartbeats.computeIfAbsent(chatId, Heartbeat::new);
+			synchronized (heartbeat) {
+				if (heartbeat.stopped) {
+					// Stopped concurrently, it is being removed
+					heartbeats.remove(chatId, heartbeat);
+					continue;
+				}
+				boolean changed = heartbeat.action != action;
+				heartbeat.action = action;
+				heartbeat.users++;
+				if (heartbeat.timeout == null || changed) {
+					if (heartbeat.timeout != null) {
+						heartbeat.timeout.cancel();
+					}
+					beat(heartbeat);
+				}
+			}
+			return new ChatAction(heartbeat);
+		}
+	}
+
+	public ChatAction startChatAction(Long chatId, ActionType action) {
+		return startChatAction(Long.toString(chatId), action);
+	}
+
+	/**
+	 * Stops the chat action of a chat, whatever the number of jobs using it
+	 *
+	 * @param chatId Chat showing the action
+	 */
+	public void stopChatAction(String chatId) {
+		Heartbeat heartbeat = heartbeats.remove(chatId);
+		if (heartbeat != null) {
+			synchronized (heartbeat) {
+				heartbeat.stop();
+			}
+		}
+	}
+
+	/**
+	 * Number of chats with an active chat action
+	 */
+	public int getActiveChatActions() {
+		return heartbeats.size();
+	}
+
+	/**
+	 * Sends a method after a delay
+	 *
+	 * @param method Method to send
+	 * @param delay  Delay before sending it
+	 * @param unit   Unit of the delay
+	 * @return Future completed with the result of the method. Cancelling it
+	 *         before the delay is over prevents sending the method
+	 */
+	public <T extends Serializable> CompletableFuture<T> schedule(BotApiMethod<T> method, long delay, TimeUnit unit) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> send(method, future), delay, unit);
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled()) {
+				timeout.cancel();
+			}
+		});
+		return future;
+	}
+
+	private <T extends Serializable> void send(BotApiMethod<T> method, CompletableFuture<T> future) {
+		if (future.isDone()) {
+			return;
+		}
+		try {
+			sender.executeAsync(method, new SentCallback<T>() {
+				@Override
+				public void onResult(BotApiMethod<T> method, T response) {
+					future.complete(response);
+				}
+
+				@Override
+				public void onError(BotApiMethod<T> method, TelegramApiRequestException apiException) {
+					future.completeExceptionally(apiException);
+				}
+
+				@Override
+				public void onException(BotApiMethod<T> method, Exception exception) {
+					future.completeExceptionally(exception);
+				}
+			});
+		} catch (TelegramApiException e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	private void beat(Heartbeat heartbeat) {
+		SendChatAction sendChatAction = new SendChatAction().setChatId(heartbeat.chatId).setAction(heartbeat.action);
+		try {
+			sender.executeAsync(sendChatAction, new SentCallback<Boolean>() {
+				@Override
+				public void onResult(BotApiMethod<Boolean> method, Boolean response) {
+				}
+
+				@Override
+				public void onError(BotApiMethod<Boolean> method, TelegramApiRequestException apiException) {
+					BotLogger.warn(LOGTAG, apiException);
+					Integer errorCode = apiException.getErrorCode();
+					if (errorCode != null && (errorCode == 400 || errorCode == 403)) {
+						// The bot can't write in this chat anymore. Only this
+						// heartbeat is stopped, the chat may have a newer one
+						heartbeats.remove(heartbeat.chatId, heartbeat);
+						synchronized (heartbeat) {
+							heartbeat.stop();
+						}
+					}
+				}
+
+				@Override
+				public void onException(BotApiMethod<Boolean> method, Exception exception) {
+					BotLogger.warn(LOGTAG, exception);
+				}
+			});
+		} catch (TelegramApiException e) {
+			BotLogger.warn(LOGTAG, e);
+		}
+		heartbeat.timeout = timer.newTimeout(() -> {
+			synchronized (heartbeat) {
+				if (!heartbeat.stopped) {
+					beat(heartbeat);
+				}
+			}
+		}, heartbeatNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private void release(Heartbeat heartbeat) {
+		synchronized (heartbeat) {
+			if (heartbeat.users > 0 && --heartbeat.users == 0) {
+				heartbeat.stop();
+				heartbeats.remove(heartbeat.chatId, heartbeat);
+			}
+		}
+	}
+
+	/**
+	 * Handle of a chat action started by a job
+	 */
+	public final class ChatAction implements AutoCloseable {
+		private final Heartbeat heartbeat;
+		private boolean closed;
+
+		private ChatAction(Heartbeat heartbeat) {
+			this.heartbeat = heartbeat;
+		}
+
+		/**
+		 * Stops the chat action if no other job of the chat is using it
+		 */
+		@Override
+		public synchronized void close() {
+			if (!closed) {
+				closed = true;
+				release(heartbeat);
+			}
+		}
+	}
+
+	private static final class Heartbeat {
+		private final String chatId;
+		private ActionType action;
+		private int users;
+		private boolean stopped;
+		private HashedWheelTimer.Timeout timeout;
+
+		private Heartbeat(String chatId) {
+			this.chatId = chatId;
+		}
+
+		private void stop() {
+			stopped = true;
+			users = 0;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.telegram.telegrambots.state;
+
+import java.util.function.LongFunction;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+/**
+ * @author agent
+ * @version 1.0 Store of the conversation state of each chat (or user) of a
+ *          bot, keyed by its primitive id.
+ *
+ *          Implementations are thread safe, but the state of a chat is
+ *          expected to be read and written by one handler at a time, as
+ *          updates of a chat are handled in order; the state objects
+ *          themselves are not locked.
+ *
+ * @param <S> Type of the state
+ */
+public interface ChatStateStore<S> {
+	/**
+	 * @param chatId Id of the chat
+	 * @return State of the chat, null if it has none or it has expired
+	 */
+	S get(long chatId);
+
+	/**
+	 * Sets the state of a chat, resetting its expiration
+	 *
+	 * @param chatId Id of the chat
+	 * @param state  New state
+	 */
+	void put(long chatId, S state);
+
+	/**
+	 * Removes the state of a chat, usually when its conversation ends
+	 *
+	 * @param chatId Id of the chat
+	 * @return Previous state, null if it had none
+	 */
+	S remove(long chatId);
+
+	/**
+	 * @return Number of chats with a state, expired ones may be included
+	 */
+	int size();
+
+	default S get(Message message) {
+		return get(message.getChatId());
+	}
+
+	default void put(Message message, S state) {
+		put(message.getChatId(), state);
+	}
+
+	/**
+	 * Gets the state of a chat, creating it if it has none
+	 *
+	 * @param chatId  Id of the chat
+	 * @param initial Creator of the initial state
+	 * @return State of the chat
+	 */
+	default S getOrCreate(long chatId, LongFunction<S> initial) {
+		S state = get(chatId);
+		if (state == null) {
+			state = initial.apply(chatId);
+			put(chatId, state);
+		}
+		return state;
+	}
+}
@@ -0,0 +1,121 @@
+package org.telegram.telegrambots.state;
+
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.collections.LongObjectHashMap;
+
+/**
+ * @author agent
+ * @version 1.0 Chat states kept in memory in primitive long maps, so millions
+ *          of chats don't cost a boxed id and a node each.
+ *
+ *          Chats are spread over segments with their own lock, held only for
+ *          the map access. Each state expires after the time to live since it
+ *          was last written; expired states are dropped when read and swept
+ *          from a segment once it has been written enough times.
+ *
+ * @param <S> Type of the state
+ */
+public class InMemoryChatStateStore<S> implements ChatStateStore<S> {
+	private static final int SEGMENTS = 64;
+	private static final int SWEEP_EVERY = 4096;
+
+	private final Segment<S>[] segments;
+	private final long ttlNanos;
+
+	/**
+	 * Creates a store whose states never expire
+	 */
+	public InMemoryChatStateStore() {
+		this(0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param ttl  Time to live of a state since it was last written, 0 to never
+	 *             expire
+	 * @param unit Unit of the time to live
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public InMemoryChatStateStore(long ttl, TimeUnit unit) {
+		this.ttlNanos = unit.toNanos(ttl);
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment<>();
+		}
+	}
+
+	@Override
+	public S get(long chatId) {
+		Segment<S> segment = segmentFor(chatId);
+		synchronized (segment) {
+			S state = segment.states.get(chatId);
+			if (state != null && isExpired(segment.states.getStamp(chatId), System.nanoTime())) {
+				segment.states.remove(chatId);
+				return null;
+			}
+			return state;
+		}
+	}
+
+	@Override
+	public void put(long chatId, S state) {
+		if (state == null) {
+			remove(chatId);
+			return;
+		}
+		Segment<S> segment = segmentFor(chatId);
+		long now = System.nanoTime();
+		synchronized (segment) {
+			segment.states.put(chatId, state, now);
+			if (ttlNanos > 0 && ++segment.writes >= SWEEP_EVERY) {
+				segment.writes = 0;
+				segment.states.removeIf((id, value, stamp) -> isExpired(stamp, now));
+			}
+		}
+	}
+
+	@Override
+	public S remove(long chatId) {
+		Segment<S> segment = segmentFor(chatId);
+		synchronized (segment) {
+			return segment.states.remove(chatId);
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (Segment<S> segment : segments) {
+			synchronized (segment) {
+				size += segment.states.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Drops all the expired states
+	 */
+	public void sweep() {
+		long now = System.nanoTime();
+		for (Segment<S> segment : segments) {
+			synchronized (segment) {
+				segment.states.removeIf((id, value, stamp) -> isExpired(stamp, now));
+			}
+		}
+	}
+
+	private boolean isExpired(long written, long now) {
+		return ttlNanos > 0 && now - written > ttlNanos;
+	}
+
+	private Segment<S> segmentFor(long chatId) {
+		long hash = chatId * 0x9E3779B97F4A7C15L;
+		return segments[(int) (hash >>> 58)];
+	}
+
+	private static final class Segment<S> {
+		private final LongObjectHashMap<S> states = new LongObjectHashMap<>();
+		private int writes;
+	}
+}
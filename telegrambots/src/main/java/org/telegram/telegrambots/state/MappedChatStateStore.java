@@ -0,0 +1,366 @@
+package org.telegram.telegrambots.state;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Chat states kept in a memory mapped file, so they survive a
+ *          restart of the bot and don't take heap.
+ *
+ *          The file is an open addressing hash table of fixed size slots:
+ *          a flag, the chat id, the time the state was written and the
+ *          encoded state, up to a maximum size. Writes go to the mapped pages
+ *          and are persisted by the operating system, or forced with
+ *          {@link #flush()}.
+ *
+ *          A slot in use is never overwritten, so the store survives a crash
+ *          at any point: a new state is written to a free slot and flagged as
+ *          used before the slot of the previous one is flagged as deleted. If
+ *          both are found when opening the store, the newest one is kept.
+ *          Deleted slots are purged by rebuilding the table into a new file
+ *          that replaces the old one once complete.
+ *
+ *          States are decoded on every read, so a changed state must be put
+ *          back to be stored.
+ *
+ * @param <S> Type of the state
+ */
+public class MappedChatStateStore<S> implements ChatStateStore<S>, Closeable {
+	private static final String LOGTAG = "MAPPEDCHATSTATESTORE";
+	private static final int MAGIC = 0x54475353;
+	private static final int HEADER_SIZE = 16;
+	private static final byte EMPTY = 0;
+	private static final byte USED = 1;
+	private static final byte DELETED = 2;
+	// flag + chat id + written time + length
+	private static final int SLOT_HEADER_SIZE = 1 + 8 + 8 + 4;
+	private static final float MAX_LOAD = 0.75f;
+
+	private final StateCodec<S> codec;
+	private final long ttlMillis;
+	private final File path;
+	private RandomAccessFile file;
+	private MappedByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private final int slotSize;
+	private int used;
+	private int deleted;
+
+	/**
+	 * Opens a store, creating the file if it doesn't exist
+	 *
+	 * @param path          File of the store
+	 * @param capacity      Maximum number of chats, rounded up to a power of
+	 *                      two. Ignored if the file already exists
+	 * @param maxStateBytes Maximum size of an encoded state. Ignored if the file
+	 *                      already exists
+	 * @param codec         Codec of the states
+	 * @param ttl           Time to live of a state since it was last written, 0
+	 *                      to never expire
+	 * @param unit          Unit of the time to live
+	 * @throws IOException If the file can't be opened or is not a store
+	 */
+	public MappedChatStateStore(File path, int capacity, int maxStateBytes, StateCodec<S> codec, long ttl,
+			TimeUnit unit) throws IOException {
+		this.codec = codec;
+		this.ttlMillis = unit.toMillis(ttl);
+		this.path = path;
+		boolean exists = path.exists() && path.length() >= HEADER_SIZE;
+		this.file = new RandomAccessFile(path, "rw");
+		try {
+			int tableCapacity;
+			int tableSlotSize;
+			if (exists) {
+				if (file.readInt() != MAGIC) {
+					throw new IOException(path + " is not a chat state store");
+				}
+				tableSlotSize = file.readInt();
+				tableCapacity = file.readInt();
+			} else {
+				tableCapacity = 1;
+				while (tableCapacity < capacity / MAX_LOAD) {
+					tableCapacity <<= 1;
+				}
+				tableSlotSize = SLOT_HEADER_SIZE + maxStateBytes;
+			}
+			if (HEADER_SIZE + (long) tableCapacity * tableSlotSize > Integer.MAX_VALUE) {
+				throw new IOException("A chat state store can't be larger than 2GB");
+			}
+			this.capacity = tableCapacity;
+			this.mask = tableCapacity - 1;
+			this.slotSize = tableSlotSize;
+			this.buffer = map(file);
+			if (!exists) {
+				writeHeader(buffer);
+			}
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+		recover();
+	}
+
+	@Override
+	public synchronized S get(long chatId) {
+		int slot = find(chatId);
+		if (slot < 0) {
+			return null;
+		}
+		int offset = offset(slot);
+		if (isExpired(buffer.getLong(offset + 9))) {
+			delete(slot);
+			return null;
+		}
+		try {
+			return codec.decode(read(offset));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to decode state of chat " + chatId, e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException If the state is larger than the slots
+	 * @throws IllegalStateException    If the store is full
+	 */
+	@Override
+	public synchronized void put(long chatId, S state) {
+		if (state == null) {
+			remove(chatId);
+			return;
+		}
+		byte[] data;
+		try {
+			data = codec.encode(state);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to encode state of chat " + chatId, e);
+		}
+		if (data.length > slotSize - SLOT_HEADER_SIZE) {
+			throw new IllegalArgumentException(
+					"State of " + data.length + " bytes exceeds " + (slotSize - SLOT_HEADER_SIZE) + " bytes");
+		}
+
+		int previous = find(chatId);
+		if (used + deleted + 1 > capacity * MAX_LOAD && (deleted > 0 || previous < 0)) {
+			rebuild();
+			previous = find(chatId);
+			if (used + (previous < 0 ? 1 : 0) > capacity * MAX_LOAD) {
+				throw new IllegalStateException("Chat state store is full");
+			}
+		}
+		long written = System.currentTimeMillis();
+		if (previous >= 0) {
+			// Newer than the previous state even within the same millisecond
+			written = Math.max(written, buffer.getLong(offset(previous) + 9) + 1);
+		}
+		int slot = insertionSlot(buffer, chatId);
+		if (buffer.get(offset(slot)) == DELETED) {
+			deleted--;
+		}
+		write(slot, chatId, written, data);
+		used++;
+		if (previous >= 0) {
+			delete(previous);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The state is deleted before being decoded, so a state that can't be
+	 * decoded is removed too, returning null
+	 */
+	@Override
+	public synchronized S remove(long chatId) {
+		int slot = find(chatId);
+		if (slot < 0) {
+			return null;
+		}
+		int offset = offset(slot);
+		boolean expired = isExpired(buffer.getLong(offset + 9));
+		byte[] data = read(offset);
+		delete(slot);
+		if (expired) {
+			return null;
+		}
+		try {
+			return codec.decode(data);
+		} catch (IOException | RuntimeException e) {
+			BotLogger.warn(LOGTAG, "Removed state of chat " + chatId + " that can't be decoded: " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized int size() {
+		return used;
+	}
+
+	/**
+	 * Forces the changes to be written to the file
+	 */
+	public synchronized void flush() {
+		buffer.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		file.close();
+	}
+
+	private int find(long chatId) {
+		int slot = slot(chatId);
+		for (int probes = 0; probes < capacity; probes++) {
+			int offset = offset(slot);
+			byte flag = buffer.get(offset);
+			if (flag == EMPTY) {
+				return -1;
+			}
+			if (flag == USED && buffer.getLong(offset + 1) == chatId) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int insertionSlot(ByteBuffer table, long chatId) {
+		int slot = slot(chatId);
+		while (table.get(offset(slot)) == USED) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private byte[] read(int offset) {
+		byte[] data = new byte[buffer.getInt(offset + 17)];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = buffer.get(offset + SLOT_HEADER_SIZE + i);
+		}
+		return data;
+	}
+
+	/**
+	 * Writes a state to a free slot
+	 */
+	private void write(int slot, long chatId, long written, byte[] data) {
+		int offset = offset(slot);
+		buffer.putLong(offset + 1, chatId);
+		buffer.putLong(offset + 9, written);
+		buffer.putInt(offset + 17, data.length);
+		for (int i = 0; i < data.length; i++) {
+			buffer.put(offset + SLOT_HEADER_SIZE + i, data[i]);
+		}
+		// Flag written last, so a torn write leaves the slot free
+		buffer.put(offset, USED);
+	}
+
+	private void delete(int slot) {
+		buffer.put(offset(slot), DELETED);
+		used--;
+		deleted++;
+	}
+
+	/**
+	 * Counts the slots of a store just opened, deleting the previous states
+	 * left by a crash while they were being replaced
+	 */
+	private void recover() {
+		Map<Long, Integer> slots = new HashMap<>();
+		for (int slot = 0; slot < capacity; slot++) {
+			int offset = offset(slot);
+			byte flag = buffer.get(offset);
+			if (flag == DELETED) {
+				deleted++;
+			} else if (flag == USED) {
+				used++;
+				Integer other = slots.put(buffer.getLong(offset + 1), slot);
+				if (other != null) {
+					if (buffer.getLong(offset(other) + 9) > buffer.getLong(offset + 9)) {
+						slots.put(buffer.getLong(offset + 1), other);
+						delete(slot);
+					} else {
+						delete(other);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the table without expired states nor deleted slots into a new
+	 * file, that replaces the current one once it is complete
+	 */
+	private void rebuild() {
+		File rebuilt = new File(path.getPath() + ".tmp");
+		int rebuiltUsed = 0;
+		try {
+			try (RandomAccessFile rebuiltFile = new RandomAccessFile(rebuilt, "rw")) {
+				rebuiltFile.setLength(0);
+				MappedByteBuffer table = map(rebuiltFile);
+				writeHeader(table);
+				for (int slot = 0; slot < capacity; slot++) {
+					int offset = offset(slot);
+					if (buffer.get(offset) == USED && !isExpired(buffer.getLong(offset + 9))) {
+						int target = offset(insertionSlot(table, buffer.getLong(offset + 1)));
+						for (int i = 1; i < slotSize; i++) {
+							table.put(target + i, buffer.get(offset + i));
+						}
+						table.put(target, USED);
+						rebuiltUsed++;
+					}
+				}
+				table.force();
+			}
+			file.close();
+			Files.move(rebuilt.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			file = new RandomAccessFile(path, "rw");
+			buffer = map(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to rebuild chat state store " + path, e);
+		}
+		used = rebuiltUsed;
+		deleted = 0;
+	}
+
+	private MappedByteBuffer map(RandomAccessFile tableFile) throws IOException {
+		return tableFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * slotSize);
+	}
+
+	private void writeHeader(ByteBuffer table) {
+		table.putInt(0, MAGIC);
+		table.putInt(4, slotSize);
+		table.putInt(8, capacity);
+	}
+
+	private boolean isExpired(long written) {
+		return ttlMillis > 0 && System.currentTimeMillis() - written > ttlMillis;
+	}
+
+	private int slot(long chatId) {
+		long hash = chatId * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private int offset(int slot) {
+		return HEADER_SIZE + slot * slotSize;
+	}
+}
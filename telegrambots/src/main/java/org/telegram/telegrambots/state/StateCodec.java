@@ -0,0 +1,39 @@
+package org.telegram.telegrambots.state;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author agent
+ * @version 1.0 Conversion of chat states to bytes, for stores that keep them
+ *          outside the heap
+ *
+ * @param <S> Type of the state
+ */
+public interface StateCodec<S> {
+	byte[] encode(S state) throws IOException;
+
+	S decode(byte[] data) throws IOException;
+
+	/**
+	 * Codec that stores states as json
+	 *
+	 * @param type Class of the state, a bean that Jackson can bind
+	 * @return Json codec of the state
+	 */
+	static <S> StateCodec<S> json(Class<S> type) {
+		ObjectMapper objectMapper = new ObjectMapper();
+		return new StateCodec<S>() {
+			@Override
+			public byte[] encode(S state) throws IOException {
+				return objectMapper.writeValueAsBytes(state);
+			}
+
+			@Override
+			public S decode(byte[] data) throws IOException {
+				return objectMapper.readValue(data, type);
+			}
+		};
+	}
+}
@@ -0,0 +1,313 @@
+package org.telegram.telegrambots.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Hashed wheel timer, a single thread serves any number of
+ *          pending timeouts.
+ *
+ *          Timeouts are hashed into a fixed number of buckets by their
+ *          deadline; each tick only the current bucket is visited. Adding and
+ *          cancelling a timeout is O(1) and doesn't need any lock, so it is
+ *          suited to many short lived timers that are mostly cancelled or
+ *          re-armed (album windows, chat action heartbeats, deadlines...).
+ *          Tasks run on the timer thread and must be short; long work must be
+ *          handed to an executor.
+ */
+public class HashedWheelTimer {
+	private static final String LOGTAG = "WHEELTIMER";
+
+	private static final int STATE_INIT = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_STOPPED = 2;
+
+	private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+	private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long tickNanos;
+	private final Thread workerThread;
+
+	private volatile long startTime;
+	private long tick;
+
+	/**
+	 * Creates a timer with a tick of 100 milliseconds and 512 buckets
+	 *
+	 * @param name Name of the timer thread
+	 */
+	public HashedWheelTimer(String name) {
+		this(name, 100, TimeUnit.MILLISECONDS, 512);
+	}
+
+	/**
+	 * @param name          Name of the timer thread
+	 * @param tickDuration  Duration of a tick, the precision of the timer
+	 * @param unit          Unit of the tick duration
+	 * @param ticksPerWheel Number of buckets, rounded up to a power of two
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be greater than 0");
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30");
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		mask = size - 1;
+		tickNanos = unit.toNanos(tickDuration);
+		workerThread = new Thread(this::run, name);
+		workerThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the timer thread. It is started automatically by the first
+	 * {@link #newTimeout(Runnable, long, TimeUnit)}.
+	 */
+	public void start() {
+		if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+			startTime = System.nanoTime();
+			workerThread.start();
+		} else if (state.get() == STATE_STOPPED) {
+			throw new IllegalStateException("Timer already stopped");
+		}
+		while (startTime == 0) {
+			// Another thread is starting the timer
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Stops the timer thread. Pending timeouts are dropped without running.
+	 */
+	public void stop() {
+		if (state.getAndSet(STATE_STOPPED) == STATE_STARTED) {
+			workerThread.interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return state.get() == STATE_STARTED;
+	}
+
+	/**
+	 * Schedules a task to be run once after the given delay
+	 *
+	 * @param task  Task to run in the timer thread
+	 * @param delay Delay before running it
+	 * @param unit  Unit of the delay
+	 * @return Handle to cancel the task
+	 */
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+		if (task == null) {
+			throw new NullPointerException("task");
+		}
+		start();
+		long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+		Timeout timeout = new Timeout(this, task, deadline);
+		newTimeouts.add(timeout);
+		return timeout;
+	}
+
+	private void run() {
+		while (state.get() == STATE_STARTED) {
+			long deadline = waitForNextTick();
+			if (deadline < 0) {
+				break;
+			}
+			processCancelledTimeouts();
+			transferNewTimeouts();
+			wheel[(int) (tick & mask)].expire(deadline);
+			tick++;
+		}
+		BotLogger.debug(LOGTAG, "Timer thread " + workerThread.getName() + " has being closed");
+	}
+
+	private long waitForNextTick() {
+		long deadline = tickNanos * (tick + 1);
+		while (true) {
+			long currentTime = System.nanoTime() - startTime;
+			long sleepMillis = (deadline - currentTime + 999999) / 1000000;
+			if (sleepMillis <= 0) {
+				return currentTime;
+			}
+			try {
+				Thread.sleep(sleepMillis);
+			} catch (InterruptedException e) {
+				if (state.get() != STATE_STARTED) {
+					return -1;
+				}
+			}
+		}
+	}
+
+	private void transferNewTimeouts() {
+		// Bounded so a producer flooding the queue can't starve the wheel
+		for (int i = 0; i < 100000; i++) {
+			Timeout timeout = newTimeouts.poll();
+			if (timeout == null) {
+				break;
+			}
+			if (timeout.state.get() == Timeout.ST_CANCELLED) {
+				continue;
+			}
+			long calculated = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (calculated - tick) / wheel.length;
+			long ticks = Math.max(calculated, tick);
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void processCancelledTimeouts() {
+		while (true) {
+			Timeout timeout = cancelledTimeouts.poll();
+			if (timeout == null) {
+				break;
+			}
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * Handle of a scheduled task
+	 */
+	public static final class Timeout {
+		private static final int ST_INIT = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+
+		private final HashedWheelTimer timer;
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+		// Only accessed by the timer thread
+		private long remainingRounds;
+		private Timeout next;
+		private Timeout prev;
+		private Bucket bucket;
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the task if it has not run yet
+		 *
+		 * @return True if it was cancelled, false if it had already run or been
+		 *         cancelled
+		 */
+		public boolean cancel() {
+			if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			timer.cancelledTimeouts.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state.get() == ST_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == ST_EXPIRED;
+		}
+
+		private void expire() {
+			if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+				return;
+			}
+			try {
+				task.run();
+			} catch (Throwable t) {
+				BotLogger.severe(LOGTAG, t);
+			}
+		}
+	}
+
+	/**
+	 * Doubly linked list of timeouts, only accessed by the timer thread
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expire(long deadline) {
+			List<Timeout> expired = null;
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+					remove(timeout);
+					if (expired == null) {
+						expired = new ArrayList<>();
+					}
+					expired.add(timeout);
+				} else if (timeout.isCancelled()) {
+					remove(timeout);
+				} else if (timeout.remainingRounds > 0) {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+			if (expired != null) {
+				for (Timeout toRun : expired) {
+					toRun.expire();
+				}
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			Timeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
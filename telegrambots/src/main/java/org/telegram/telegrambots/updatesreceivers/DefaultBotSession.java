@@ -7,28 +7,44 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
-import org.json.JSONException;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.entities.EntityCache;
+import org.telegram.telegrambots.inline.InlineQueryTracker;
 import org.telegram.telegrambots.meta.ApiConstants;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.BotOptions;
 import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.meta.generics.LongPollingBot;
 import org.telegram.telegrambots.meta.generics.UpdatesHandler;
 import org.telegram.telegrambots.meta.generics.UpdatesReader;
 import org.telegram.telegrambots.meta.logging.BotLogger;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+import org.telegram.telegrambots.sending.ApiMethodCache;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
@@ -43,6 +59,13 @@ public class DefaultBotSession implements BotSession {
 	private volatile boolean running = false;
 
 	private final ConcurrentLinkedDeque<Update> receivedUpdates = new ConcurrentLinkedDeque<>();
+	private final ConcurrentLinkedQueue<List<Update>> receivedMediaGroups = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Update> delayedUpdates = new ConcurrentLinkedQueue<>();
+	private final PriorityBlockingQueue<DeadlineUpdate> receivedDeadlineUpdates = new PriorityBlockingQueue<>();
+	private final AtomicLong receivedSequence = new AtomicLong();
+	// When the oldest update in receivedUpdates was received, 0 if there are
+	// none. Guarded by receivedUpdates
+	private long receivedSince;
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
 	private ReaderThread readerThread;
@@ -51,6 +74,9 @@ public class DefaultBotSession implements BotSession {
 	private String token;
 	private int lastReceivedUpdate = 0;
 	private UpdatesSupplier updatesSupplier;
+	private DefaultBotOptions options;
+	private MediaGroupAggregator mediaGroupAggregator;
+	private final Set<HashedWheelTimer.Timeout> timeouts = new HashSet<>();
 
 	@Inject
 	public DefaultBotSession() {
@@ -66,6 +92,14 @@ public class DefaultBotSession implements BotSession {
 
 		lastReceivedUpdate = 0;
 
+		if (options == null) {
+			options = new DefaultBotOptions();
+		}
+		if (options.getMediaGroupQuietMillis() > 0) {
+			mediaGroupAggregator = new MediaGroupAggregator(options.getTimer(),
+					options.getMediaGroupQuietMillis(), this::addMediaGroup);
+		}
+
 		readerThread = new ReaderThread(updatesSupplier, this);
 		readerThread.setName(callback.getBotUsername() + " Telegram Connection");
 		readerThread.start();
@@ -91,6 +125,16 @@ public class DefaultBotSession implements BotSession {
 			handlerThread.interrupt();
 		}
 
+		if (mediaGroupAggregator != null) {
+			mediaGroupAggregator.clear();
+			mediaGroupAggregator = null;
+		}
+
+		synchronized (timeouts) {
+			timeouts.forEach(HashedWheelTimer.Timeout::cancel);
+			timeouts.clear();
+		}
+
 		if (callback != null) {
 			callback.onClosing();
 		}
@@ -116,6 +160,18 @@ public class DefaultBotSession implements BotSession {
 		this.callback = callback;
 	}
 
+	@Override
+	public void setOptions(BotOptions options) {
+		if (this.options != null) {
+			throw new InvalidParameterException("BotOptions has already been set");
+		}
+		if (options instanceof DefaultBotOptions) {
+			this.options = (DefaultBotOptions) options;
+		} else if (options != null) {
+			throw new InvalidParameterException("BotOptions must be an instance of DefaultBotOptions");
+		}
+	}
+
 	@Override
 	public boolean isRunning() {
 		return running;
@@ -127,6 +183,8 @@ public class DefaultBotSession implements BotSession {
 		private final Object lock;
 		private HttpClient httpclient;
 		private ExponentialBackOff exponentialBackOff;
+		private UpdatesDeserializer updatesDeserializer;
+		private int lastPageUpdateId;
 
 		public ReaderThread(UpdatesSupplier updatesSupplier, Object lock) {
 			this.updatesSupplier = Optional.ofNullable(updatesSupplier).orElse(this::getUpdatesFromServer);
@@ -138,6 +196,8 @@ public class DefaultBotSession implements BotSession {
 			httpclient = new HttpClient(new SslContextFactory());
 
 			exponentialBackOff = new ExponentialBackOff();
+			updatesDeserializer = new UpdatesDeserializer(objectMapper, options.getAllowedUpdates(),
+					options.getMessageFields(), options.getUpdateJournal());
 
 			httpclient.setConnectTimeout(SOCKET_TIMEOUT);
 
@@ -159,20 +219,51 @@ public class DefaultBotSession implements BotSession {
 						try {
 							List<Update> updates = updatesSupplier.getUpdates();
 							if (updates.isEmpty()) {
+								// Everything received may have been skipped by type
+								lastReceivedUpdate = Math.max(lastReceivedUpdate, lastPageUpdateId);
 								lock.wait(500);
 							} else {
 								updates.removeIf(x -> x.getUpdateId() < lastReceivedUpdate);
-								lastReceivedUpdate = updates.parallelStream().map(Update::getUpdateId)
-										.max(Integer::compareTo).orElse(0);
-								receivedUpdates.addAll(updates);
-
+								int lastUpdateId = lastPageUpdateId;
+								for (Update update : updates) {
+									lastUpdateId = Math.max(lastUpdateId, update.getUpdateId());
+								}
+								lastReceivedUpdate = lastUpdateId;
+								EntityCache entityCache = options.getEntityCache();
+								if (entityCache != null) {
+									entityCache.observe(updates);
+								}
+								ApiMethodCache apiMethodCache = options.getApiMethodCache();
+								if (apiMethodCache != null) {
+									apiMethodCache.invalidate(updates);
+								}
+								if (mediaGroupAggregator != null) {
+									updates.removeIf(mediaGroupAggregator::offer);
+								}
+								InlineQueryTracker inlineQueryTracker = options.getInlineQueryTracker();
+								if (inlineQueryTracker != null) {
+									for (Update update : updates) {
+										if (update.hasInlineQuery()) {
+											inlineQueryTracker.track(update.getInlineQuery());
+										}
+									}
+								}
+								UpdateDeadlines updateDeadlines = options.getUpdateDeadlines();
+								if (updateDeadlines != null) {
+									addDeadlineUpdates(updates, updateDeadlines);
+								}
 								synchronized (receivedUpdates) {
+									if (receivedSince == 0) {
+										receivedSince = System.nanoTime();
+									}
+									receivedUpdates.addAll(updates);
 									receivedUpdates.notifyAll();
 								}
 							}
 						} catch (InterruptedException e) {
 							if (!running) {
 								receivedUpdates.clear();
+								receivedDeadlineUpdates.clear();
 							}
 							BotLogger.debug(LOGTAG, e);
 							interrupt();
@@ -185,6 +276,7 @@ public class DefaultBotSession implements BotSession {
 							} catch (InterruptedException e) {
 								if (!running) {
 									receivedUpdates.clear();
+									receivedDeadlineUpdates.clear();
 								}
 								BotLogger.debug(LOGTAG, e);
 								interrupt();
@@ -198,29 +290,30 @@ public class DefaultBotSession implements BotSession {
 
 		private List<Update> getUpdatesFromServer() throws IOException {
 			GetUpdates request = new GetUpdates().setLimit(100).setTimeout(ApiConstants.GETUPDATES_TIMEOUT)
-					.setOffset(lastReceivedUpdate + 1);
+					.setOffset(lastReceivedUpdate + 1).setAllowedUpdates(options.getAllowedUpdates());
 
-			String url = ApiConstants.BASE_URL + token + "/" + GetUpdates.PATH;
+			String url = options.getBaseUrl() + token + "/" + GetUpdates.PATH;
 			Request httpPost = httpclient.POST(url);
 			httpPost.header("charset", StandardCharsets.UTF_8.name());
 			httpPost.content(new StringContentProvider(objectMapper.writeValueAsString(request)), "application/json");
 
 			try {
 				ContentResponse response = httpPost.send();
-				String responseContent = response.getContentAsString();
 
 				if (response.getStatus() >= 500) {
-					BotLogger.warn(LOGTAG, responseContent);
+					BotLogger.warn(LOGTAG, response.getContentAsString());
 					synchronized (lock) {
 						lock.wait(500);
 					}
 				} else {
 					try {
-						List<Update> updates = request.deserializeResponse(responseContent);
+						UpdatesDeserializer.UpdatesPage page = updatesDeserializer.deserialize(request,
+								response.getContent());
+						lastPageUpdateId = page.getLastUpdateId();
 						exponentialBackOff.reset();
-						return updates;
-					} catch (JSONException e) {
-						BotLogger.severe(responseContent, LOGTAG, e);
+						return page.getUpdates();
+					} catch (IOException e) {
+						BotLogger.severe(response.getContentAsString(), LOGTAG, e);
 					}
 				}
 			} catch (ExecutionException | TelegramApiRequestException e) {
@@ -240,6 +333,87 @@ public class DefaultBotSession implements BotSession {
 		List<Update> getUpdates() throws Exception;
 	}
 
+	/**
+	 * Moves the updates with a deadline to their own queue, ordered by deadline,
+	 * and schedules the automatic answers of callback queries
+	 */
+	private void addDeadlineUpdates(List<Update> updates, UpdateDeadlines updateDeadlines) {
+		long now = System.nanoTime();
+		for (Iterator<Update> it = updates.iterator(); it.hasNext();) {
+			Update update = it.next();
+			long deadlineMillis = updateDeadlines.getDeadlineMillis(update);
+			if (deadlineMillis > 0) {
+				receivedDeadlineUpdates.add(new DeadlineUpdate(update,
+						now + TimeUnit.MILLISECONDS.toNanos(deadlineMillis), receivedSequence.incrementAndGet()));
+				it.remove();
+			}
+			if (update.hasCallbackQuery()) {
+				scheduleAutoAnswer(updateDeadlines, update.getCallbackQuery().getId());
+			}
+		}
+	}
+
+	private void scheduleAutoAnswer(UpdateDeadlines updateDeadlines, String callbackQueryId) {
+		long autoAnswerMillis = updateDeadlines.getAutoAnswerMillis();
+		if (autoAnswerMillis <= 0 || !(callback instanceof AbsSender)) {
+			return;
+		}
+		AbsSender sender = (AbsSender) callback;
+		schedule(() -> {
+			AnswerCallbackQuery answerCallbackQuery = updateDeadlines.claimAutoAnswer(callbackQueryId);
+			if (answerCallbackQuery == null) {
+				return;
+			}
+			try {
+				sender.executeAsync(answerCallbackQuery, new SentCallback<Boolean>() {
+					@Override
+					public void onResult(BotApiMethod<Boolean> method, Boolean response) {
+						updateDeadlines.autoAnswered();
+					}
+
+					@Override
+					public void onError(BotApiMethod<Boolean> method, TelegramApiRequestException apiException) {
+						updateDeadlines.releaseAnswer(answerCallbackQuery);
+						BotLogger.warn(LOGTAG, apiException);
+					}
+
+					@Override
+					public void onException(BotApiMethod<Boolean> method, Exception exception) {
+						updateDeadlines.releaseAnswer(answerCallbackQuery);
+						BotLogger.warn(LOGTAG, exception);
+					}
+				});
+			} catch (TelegramApiException e) {
+				updateDeadlines.releaseAnswer(answerCallbackQuery);
+				BotLogger.warn(LOGTAG, e);
+			}
+		}, autoAnswerMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules a task on the timer of the options, cancelled if the session
+	 * stops before it runs
+	 */
+	private void schedule(Runnable task, long delay, TimeUnit unit) {
+		HashedWheelTimer.Timeout[] timeout = new HashedWheelTimer.Timeout[1];
+		synchronized (timeouts) {
+			timeout[0] = options.getTimer().newTimeout(() -> {
+				synchronized (timeouts) {
+					timeouts.remove(timeout[0]);
+				}
+				task.run();
+			}, delay, unit);
+			timeouts.add(timeout[0]);
+		}
+	}
+
+	private void addMediaGroup(List<Update> mediaGroup) {
+		receivedMediaGroups.add(mediaGroup);
+		synchronized (receivedUpdates) {
+			receivedUpdates.notifyAll();
+		}
+	}
+
 	private List<Update> getUpdateList() {
 		List<Update> updates = new ArrayList<>();
 		for (Iterator<Update> it = receivedUpdates.iterator(); it.hasNext();) {
@@ -249,23 +423,113 @@ public class DefaultBotSession implements BotSession {
 		return updates;
 	}
 
+	/**
+	 * @return Updates delayed by the flood guard whose delay is over
+	 */
+	private List<Update> getDelayedUpdateList() {
+		List<Update> updates = new ArrayList<>();
+		Update update;
+		while ((update = delayedUpdates.poll()) != null) {
+			updates.add(update);
+		}
+		return updates;
+	}
+
+	/**
+	 * @return Updates with a deadline, earliest deadline first
+	 */
+	private List<Update> getDeadlineUpdateList() {
+		List<Update> updates = new ArrayList<>();
+		long now = System.nanoTime();
+		UpdateDeadlines updateDeadlines = options.getUpdateDeadlines();
+		DeadlineUpdate deadlineUpdate;
+		while ((deadlineUpdate = receivedDeadlineUpdates.poll()) != null) {
+			if (updateDeadlines != null && now - deadlineUpdate.deadline > 0) {
+				updateDeadlines.missedDeadline();
+			}
+			updates.add(deadlineUpdate.update);
+		}
+		return updates;
+	}
+
+	private static final class DeadlineUpdate implements Comparable<DeadlineUpdate> {
+		private final Update update;
+		private final long deadline;
+		private final long sequence;
+
+		private DeadlineUpdate(Update update, long deadline, long sequence) {
+			this.update = update;
+			this.deadline = deadline;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(DeadlineUpdate other) {
+			int byDeadline = Long.compare(deadline - other.deadline, 0);
+			return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+		}
+	}
+
 	private class HandlerThread extends Thread implements UpdatesHandler {
 		@Override
 		public void run() {
 			setPriority(Thread.MIN_PRIORITY);
 			while (running) {
 				try {
-					List<Update> updates = getUpdateList();
-					if (updates.isEmpty()) {
+					List<Update> deadlineUpdates = getDeadlineUpdateList();
+					List<Update> updates;
+					long since;
+					// Together, so the time of a batch received meanwhile is not lost
+					synchronized (receivedUpdates) {
+						updates = getUpdateList();
+						since = receivedSince;
+						receivedSince = 0;
+					}
+					LoadShedder loadShedder = options.getLoadShedder();
+					if (loadShedder != null && !updates.isEmpty()) {
+						loadShedder.shed(updates, updates.size() + receivedUpdates.size(),
+								since == 0 ? 0 : System.nanoTime() - since);
+					}
+					// Already kept by the load shedder, and received before the rest
+					updates.addAll(0, getDelayedUpdateList());
+					List<Update> mediaGroup = receivedMediaGroups.poll();
+					if (deadlineUpdates.isEmpty() && updates.isEmpty() && mediaGroup == null) {
 						synchronized (receivedUpdates) {
-							receivedUpdates.wait();
-							updates = getUpdateList();
-							if (updates.isEmpty()) {
-								continue;
+							if (receivedUpdates.isEmpty() && receivedMediaGroups.isEmpty()
+									&& receivedDeadlineUpdates.isEmpty() && delayedUpdates.isEmpty()) {
+								receivedUpdates.wait();
 							}
 						}
+						continue;
+					}
+					UpdateDeduplicator updateDeduplicator = options.getUpdateDeduplicator();
+					if (updateDeduplicator != null && mediaGroup != null) {
+						mediaGroup.removeIf(x -> updateDeduplicator.isHandled(x.getUpdateId()));
+					}
+					handleUpdates(deadlineUpdates, false);
+					if (options.getUpdateDeadlines() == null) {
+						handleUpdates(updates, true);
+					} else {
+						// One by one, so updates with a deadline received meanwhile go first
+						for (Update update : updates) {
+							List<Update> single = new ArrayList<>(1);
+							single.add(update);
+							handleUpdates(single, true);
+							handleUpdates(getDeadlineUpdateList(), false);
+						}
+					}
+					while (mediaGroup != null) {
+						if (!mediaGroup.isEmpty()) {
+							callback.onMediaGroupReceived(mediaGroup);
+							if (updateDeduplicator != null) {
+								handled(updateDeduplicator, mediaGroup);
+							}
+						}
+						mediaGroup = receivedMediaGroups.poll();
+						if (mediaGroup != null && updateDeduplicator != null) {
+							mediaGroup.removeIf(x -> updateDeduplicator.isHandled(x.getUpdateId()));
+						}
 					}
-					callback.onUpdatesReceived(updates);
 				} catch (InterruptedException e) {
 					BotLogger.debug(LOGTAG, e);
 					interrupt();
@@ -275,5 +539,59 @@ public class DefaultBotSession implements BotSession {
 			}
 			BotLogger.debug(LOGTAG, "Handler thread has being closed");
 		}
+
+		/**
+		 * @param limited False for updates with a deadline, which are not
+		 *                limited by the flood guard
+		 */
+		private void handleUpdates(List<Update> updates, boolean limited) {
+			FloodGuard floodGuard = options.getFloodGuard();
+			if (floodGuard != null && limited) {
+				// Before deduplicating, so delayed updates are only checked once
+				updates.removeIf(x -> !admit(floodGuard, x));
+			}
+			UpdateDeduplicator updateDeduplicator = options.getUpdateDeduplicator();
+			if (updateDeduplicator != null) {
+				updates.removeIf(x -> updateDeduplicator.isHandled(x.getUpdateId()));
+			}
+			InlineQueryTracker inlineQueryTracker = options.getInlineQueryTracker();
+			if (inlineQueryTracker != null) {
+				// Queries superseded while waiting here are not worth handling
+				updates.removeIf(
+						x -> x.hasInlineQuery() && inlineQueryTracker.skipIfSuperseded(x.getInlineQuery()));
+			}
+			if (!updates.isEmpty()) {
+				callback.onUpdatesReceived(updates);
+				// Only once handled, so updates whose handling failed can be handled
+				// again if they are received again
+				if (updateDeduplicator != null) {
+					handled(updateDeduplicator, updates);
+				}
+			}
+		}
+
+		private void handled(UpdateDeduplicator updateDeduplicator, List<Update> updates) {
+			for (Update update : updates) {
+				updateDeduplicator.handled(update.getUpdateId());
+			}
+		}
+
+		/**
+		 * @return True if the update can be handed now. Delayed updates are
+		 *         queued again once their delay is over, in a queue of their own
+		 *         so they don't go through the load shedder again
+		 */
+		private boolean admit(FloodGuard floodGuard, Update update) {
+			long delay = floodGuard.admit(update);
+			if (delay > 0) {
+				schedule(() -> {
+					delayedUpdates.add(update);
+					synchronized (receivedUpdates) {
+						receivedUpdates.notifyAll();
+					}
+				}, delay, TimeUnit.NANOSECONDS);
+			}
+			return delay == 0;
+		}
 	}
 }
@@ -0,0 +1,328 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.collections.LongObjectHashMap;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictChatMember;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
+
+/**
+ * @author agent
+ * @version 1.0 Limit of the updates handed to the bot per user or per chat, so
+ *          a single user flooding the bot can't take most of its time.
+ *
+ *          Each user has a token bucket, refilled at the rate allowed and
+ *          holding up to a burst of updates. An update arriving with the
+ *          bucket empty is delayed until it refills, if that is soon enough,
+ *          or dropped. Buckets are kept in a primitive long map and forgotten
+ *          once they would be full again, so idle users cost nothing.
+ *
+ *          Updates without a user, like channel posts when limiting per user,
+ *          are not limited. Albums, shipping and pre checkout queries are not
+ *          limited either, as payments must be answered, and neither are the
+ *          updates with a deadline (see {@link UpdateDeadlines}).
+ */
+public class FloodGuard {
+	/**
+	 * Result of {@link #admit(Update)} for updates to drop
+	 */
+	public static final long DROP = -1;
+
+	private static final String LOGTAG = "FLOODGUARD";
+	private static final int SWEEP_EVERY = 4096;
+
+	private final LongObjectHashMap<Bucket> buckets = new LongObjectHashMap<>();
+	private final Set<Update> delayed = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final double permitsPerNano;
+	private final double burst;
+	private final long idleNanos;
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong delayedUpdates = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean perChat;
+	private long maxDelayNanos;
+	private FloodListener listener;
+	private int admits;
+
+	/**
+	 * @param updatesPerSecond Updates allowed per second to each user
+	 * @param burst            Updates allowed at once to a user that was idle
+	 */
+	public FloodGuard(double updatesPerSecond, int burst) {
+		if (updatesPerSecond <= 0 || burst <= 0) {
+			throw new IllegalArgumentException("Rate and burst must be positive");
+		}
+		this.permitsPerNano = updatesPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.idleNanos = (long) (burst / permitsPerNano);
+	}
+
+	/**
+	 * Limits the updates per chat instead of per user
+	 *
+	 * @param perChat True to limit them per chat, false per user (default)
+	 * @return This object
+	 */
+	public synchronized FloodGuard setPerChat(boolean perChat) {
+		this.perChat = perChat;
+		return this;
+	}
+
+	/**
+	 * Delays the updates exceeding the limit instead of dropping them, as long
+	 * as they don't have to wait too long
+	 *
+	 * @param maxDelay Longest delay of an update, 0 to drop them all (default)
+	 * @param unit     Unit of the delay
+	 * @return This object
+	 */
+	public synchronized FloodGuard setMaxDelay(long maxDelay, TimeUnit unit) {
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		return this;
+	}
+
+	/**
+	 * @param listener Listener of the updates dropped, null for none
+	 * @return This object
+	 */
+	public synchronized FloodGuard setListener(FloodListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Checks an update against the limit of its user. Updates delayed are
+	 * admitted when checked again
+	 *
+	 * @param update Update received
+	 * @return 0 to hand it to the bot, {@link #DROP} to drop it or the
+	 *         nanoseconds to wait before handing it
+	 */
+	public long admit(Update update) {
+		if (update.hasShippingQuery() || update.hasPreCheckoutQuery()) {
+			return 0;
+		}
+		long key = perChat ? getChatId(update) : getUserId(update);
+		if (key == 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		FloodListener currentListener;
+		int drops;
+		synchronized (this) {
+			if (delayed.remove(update)) {
+				admitted.incrementAndGet();
+				return 0;
+			}
+			Bucket bucket = buckets.get(key);
+			if (bucket == null) {
+				bucket = new Bucket(burst);
+				buckets.put(key, bucket, now);
+			} else {
+				bucket.tokens = Math.min(burst, bucket.tokens + (now - buckets.getStamp(key)) * permitsPerNano);
+				buckets.setStamp(key, now);
+			}
+			if (++admits >= SWEEP_EVERY) {
+				admits = 0;
+				sweep(now);
+			}
+			if (bucket.tokens >= 1) {
+				bucket.tokens -= 1;
+				bucket.drops = 0;
+				admitted.incrementAndGet();
+				return 0;
+			}
+			long wait = (long) Math.ceil((1 - bucket.tokens) / permitsPerNano);
+			if (wait <= maxDelayNanos) {
+				// Taken in advance, so later updates wait for this one
+				bucket.tokens -= 1;
+				delayed.add(update);
+				delayedUpdates.incrementAndGet();
+				return wait;
+			}
+			drops = ++bucket.drops;
+			dropped.incrementAndGet();
+			currentListener = listener;
+		}
+		if (currentListener != null) {
+			try {
+				currentListener.onFlood(key, update, drops);
+			} catch (RuntimeException e) {
+				BotLogger.severe(LOGTAG, e);
+			}
+		}
+		return DROP;
+	}
+
+	/**
+	 * Number of users or chats with a bucket
+	 */
+	public synchronized int size() {
+		return buckets.size();
+	}
+
+	/**
+	 * Number of updates handed to the bot, after a delay or not
+	 */
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	/**
+	 * Number of updates delayed
+	 */
+	public long getDelayed() {
+		return delayedUpdates.get();
+	}
+
+	/**
+	 * Number of updates dropped
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	private void sweep(long now) {
+		buckets.removeIf((key, bucket, refilledAt) -> now - refilledAt > idleNanos);
+	}
+
+	/**
+	 * @return Id of the user that sent the update, 0 if there is none
+	 */
+	public static long getUserId(Update update) {
+		User user = null;
+		if (update.hasMessage()) {
+			user = update.getMessage().getFrom();
+		} else if (update.hasEditedMessage()) {
+			user = update.getEditedMessage().getFrom();
+		} else if (update.hasCallbackQuery()) {
+			user = update.getCallbackQuery().getFrom();
+		} else if (update.hasInlineQuery()) {
+			user = update.getInlineQuery().getFrom();
+		} else if (update.hasChosenInlineQuery()) {
+			user = update.getChosenInlineQuery().getFrom();
+		} else if (update.hasShippingQuery()) {
+			user = update.getShippingQuery().getFrom();
+		} else if (update.hasPreCheckoutQuery()) {
+			user = update.getPreCheckoutQuery().getFrom();
+		}
+		return user == null || user.getId() == null ? 0 : user.getId();
+	}
+
+	/**
+	 * @return Id of the chat of the update, 0 if there is none
+	 */
+	public static long getChatId(Update update) {
+		Message message = null;
+		if (update.hasMessage()) {
+			message = update.getMessage();
+		} else if (update.hasEditedMessage()) {
+			message = update.getEditedMessage();
+		} else if (update.hasChannelPost()) {
+			message = update.getChannelPost();
+		} else if (update.hasEditedChannelPost()) {
+			message = update.getEditedChannelPost();
+		} else if (update.hasCallbackQuery()) {
+			message = update.getCallbackQuery().getMessage();
+		}
+		if (message != null && message.getChatId() != null) {
+			return message.getChatId();
+		}
+		// Queries without a chat are limited by their user
+		return getUserId(update);
+	}
+
+	/**
+	 * Listener of the updates dropped, for example to log them or to ban the
+	 * users flooding the bot
+	 */
+	public interface FloodListener {
+		/**
+		 * Called for every update dropped
+		 *
+		 * @param key    Id of the user or the chat
+		 * @param update Update dropped
+		 * @param drops  Number of updates of the user dropped in a row
+		 */
+		void onFlood(long key, Update update, int drops);
+	}
+
+	/**
+	 * Listener that restricts the users flooding a group from sending messages
+	 * for a while, using {@link RestrictChatMember}. The bot must be an
+	 * administrator of the group
+	 */
+	public static class RestrictingListener implements FloodListener {
+		private final AbsSender sender;
+		private final int maxDrops;
+		private final long restrictSeconds;
+
+		/**
+		 * @param sender          Sender of the restrictions
+		 * @param maxDrops        Updates dropped in a row after which the user
+		 *                        is restricted
+		 * @param restrictSeconds Time the user is restricted
+		 */
+		public RestrictingListener(AbsSender sender, int maxDrops, long restrictSeconds) {
+			this.sender = sender;
+			this.maxDrops = maxDrops;
+			this.restrictSeconds = restrictSeconds;
+		}
+
+		@Override
+		public void onFlood(long key, Update update, int drops) {
+			if (drops != maxDrops || !update.hasMessage()) {
+				return;
+			}
+			Message message = update.getMessage();
+			if (message.getFrom() == null || !(message.isGroupMessage() || message.isSuperGroupMessage())) {
+				return;
+			}
+			RestrictChatMember restrictChatMember = new RestrictChatMember(message.getChatId(),
+					message.getFrom().getId()).setCanSendMessages(false)
+							.setUntilDate((int) (System.currentTimeMillis() / 1000 + restrictSeconds));
+			try {
+				sender.executeAsync(restrictChatMember, new SentCallback<Boolean>() {
+					@Override
+					public void onResult(BotApiMethod<Boolean> method, Boolean response) {
+						BotLogger.info(LOGTAG, "Restricted user " + message.getFrom().getId() + " in chat "
+								+ message.getChatId() + " for flooding");
+					}
+
+					@Override
+					public void onError(BotApiMethod<Boolean> method, TelegramApiRequestException apiException) {
+						BotLogger.warn(LOGTAG, apiException);
+					}
+
+					@Override
+					public void onException(BotApiMethod<Boolean> method, Exception exception) {
+						BotLogger.warn(LOGTAG, exception);
+					}
+				});
+			} catch (TelegramApiException e) {
+				BotLogger.warn(LOGTAG, e);
+			}
+		}
+	}
+
+	private static final class Bucket {
+		private double tokens;
+		private int drops;
+
+		private Bucket(double tokens) {
+			this.tokens = tokens;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.logging.BotLogger;
+
+/**
+ * @author agent
+ * @version 1.0 Policy to drop low value updates when the bot falls behind.
+ *
+ *          The session checks the updates waiting to be handled each time it
+ *          takes them from its queue. Once there are more than the maximum
+ *          depth, or the oldest one has waited longer than the maximum age,
+ *          the bot is overloaded and low value updates are dropped, or only
+ *          one of every few is kept. It stays overloaded until both the depth
+ *          and the age are below half of their maximum.
+ *
+ *          By default, low value updates are edited messages, channel posts
+ *          and messages of groups that are not commands. Payments, queries and
+ *          private messages are always kept.
+ */
+public class LoadShedder {
+	private static final String LOGTAG = "LOADSHEDDER";
+
+	private final int maxDepth;
+	private final long maxAgeNanos;
+	private final AtomicLong kept = new AtomicLong();
+	private final AtomicLong sampled = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong overloads = new AtomicLong();
+	private Predicate<Update> lowValue = LoadShedder::isLowValue;
+	private int sampleRate;
+	private long lowValueSeen;
+	private boolean overloaded;
+
+	/**
+	 * @param maxDepth Number of updates waiting above which the bot is
+	 *                 overloaded, 0 to not check it
+	 * @param maxAge   Time the oldest update has waited above which the bot is
+	 *                 overloaded, 0 to not check it
+	 * @param unit     Unit of the age
+	 */
+	public LoadShedder(int maxDepth, long maxAge, TimeUnit unit) {
+		this.maxDepth = maxDepth;
+		this.maxAgeNanos = unit.toNanos(maxAge);
+	}
+
+	/**
+	 * Keeps one of every few low value updates when overloaded, instead of
+	 * dropping all of them
+	 *
+	 * @param sampleRate Number of low value updates for each one kept, 0 to
+	 *                   drop all of them (default)
+	 * @return This object
+	 */
+	public synchronized LoadShedder setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+		return this;
+	}
+
+	/**
+	 * Sets which updates can be dropped when overloaded
+	 *
+	 * @param lowValue Predicate of the low value updates
+	 * @return This object
+	 */
+	public synchronized LoadShedder setLowValue(Predicate<Update> lowValue) {
+		this.lowValue = lowValue;
+		return this;
+	}
+
+	/**
+	 * Removes the updates to drop
+	 *
+	 * @param updates  Updates taken from the queue, modified in place
+	 * @param depth    Number of updates waiting, including these ones
+	 * @param ageNanos Time the oldest of them has waited
+	 */
+	public synchronized void shed(List<Update> updates, int depth, long ageNanos) {
+		boolean wasOverloaded = overloaded;
+		if (isAbove(depth, ageNanos, 1)) {
+			overloaded = true;
+		} else if (!isAbove(depth, ageNanos, 2)) {
+			overloaded = false;
+		}
+		if (overloaded != wasOverloaded) {
+			if (overloaded) {
+				overloads.incrementAndGet();
+				BotLogger.warn(LOGTAG, "Overloaded with " + depth + " updates waiting for "
+						+ TimeUnit.NANOSECONDS.toMillis(ageNanos) + "ms, shedding low value updates");
+			} else {
+				BotLogger.info(LOGTAG, "No longer overloaded");
+			}
+		}
+		if (!overloaded) {
+			kept.addAndGet(updates.size());
+			return;
+		}
+		for (Iterator<Update> it = updates.iterator(); it.hasNext();) {
+			Update update = it.next();
+			if (!lowValue.test(update)) {
+				kept.incrementAndGet();
+			} else if (sampleRate > 0 && lowValueSeen++ % sampleRate == 0) {
+				sampled.incrementAndGet();
+			} else {
+				dropped.incrementAndGet();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return True if low value updates are being dropped
+	 */
+	public synchronized boolean isOverloaded() {
+		return overloaded;
+	}
+
+	/**
+	 * Number of updates kept because they were not low value or the bot was not
+	 * overloaded
+	 */
+	public long getKept() {
+		return kept.get();
+	}
+
+	/**
+	 * Number of low value updates kept by sampling while overloaded
+	 */
+	public long getSampled() {
+		return sampled.get();
+	}
+
+	/**
+	 * Number of low value updates dropped
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of times the bot became overloaded
+	 */
+	public long getOverloads() {
+		return overloads.get();
+	}
+
+	/**
+	 * @param divisor Divisor of the thresholds
+	 * @return True if the depth or the age are above their thresholds divided
+	 *         by the divisor
+	 */
+	private boolean isAbove(int depth, long ageNanos, int divisor) {
+		return (maxDepth > 0 && depth > maxDepth / divisor) || (maxAgeNanos > 0 && ageNanos > maxAgeNanos / divisor);
+	}
+
+	/**
+	 * Default predicate of the low value updates
+	 */
+	public static boolean isLowValue(Update update) {
+		if (update.hasEditedMessage() || update.hasChannelPost() || update.hasEditedChannelPost()
+				|| update.hasChosenInlineQuery()) {
+			return true;
+		}
+		if (!update.hasMessage()) {
+			return false;
+		}
+		Message message = update.getMessage();
+		return !message.isUserMessage() && !message.isCommand() && !message.hasSuccessfulPayment();
+	}
+}
@@ -0,0 +1,139 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.timer.HashedWheelTimer;
+
+/**
+ * @author agent
+ * @version 1.0 Collects the updates of an album (same media_group_id), that
+ *          Telegram delivers one by one and maybe in different getUpdates
+ *          pages, and emits them together once no new item has arrived for
+ *          the quiet window.
+ *
+ *          A group only keeps one timeout in the wheel at a time: when it
+ *          fires before the window is over it is re-armed for the remaining
+ *          time instead of being cancelled on every new item.
+ */
+class MediaGroupAggregator {
+	/**
+	 * Telegram albums can't have more items, so a group is emitted as soon as
+	 * it is full
+	 */
+	static final int MAX_GROUP_SIZE = 10;
+
+	private final Map<String, PendingGroup> groups = new ConcurrentHashMap<>();
+	private final HashedWheelTimer timer;
+	private final long quietNanos;
+	private final Consumer<List<Update>> sink;
+
+	MediaGroupAggregator(HashedWheelTimer timer, long quietMillis, Consumer<List<Update>> sink) {
+		this.timer = timer;
+		this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+		this.sink = sink;
+	}
+
+	/**
+	 * Takes an update if it belongs to an album
+	 *
+	 * @param update Update received
+	 * @return True if the update has been retained, false if it must follow
+	 *         the normal path
+	 */
+	boolean offer(Update update) {
+		String mediaGroupId = getMediaGroupId(update);
+		if (mediaGroupId == null) {
+			return false;
+		}
+
+		while (true) {
+			PendingGroup group = groups.computeIfAbsent(mediaGroupId, PendingGroup::new);
+			synchronized (group) {
+				if (group.emitted) {
+					// Emitted concurrently by the timer, start a new group
+					groups.remove(mediaGroupId, group);
+					continue;
+				}
+				group.updates.add(update);
+				group.lastSeen = System.nanoTime();
+				if (group.updates.size() >= MAX_GROUP_SIZE) {
+					if (group.timeout != null) {
+						group.timeout.cancel();
+					}
+					emit(group);
+				} else if (group.timeout == null) {
+					group.timeout = timer.newTimeout(() -> check(group), quietNanos, TimeUnit.NANOSECONDS);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Number of albums waiting for their quiet window to end
+	 */
+	int getPendingGroups() {
+		return groups.size();
+	}
+
+	void clear() {
+		for (PendingGroup group : groups.values()) {
+			synchronized (group) {
+				group.emitted = true;
+				if (group.timeout != null) {
+					group.timeout.cancel();
+				}
+			}
+		}
+		groups.clear();
+	}
+
+	private void check(PendingGroup group) {
+		synchronized (group) {
+			if (group.emitted) {
+				return;
+			}
+			long remaining = group.lastSeen + quietNanos - System.nanoTime();
+			if (remaining > 0) {
+				group.timeout = timer.newTimeout(() -> check(group), remaining, TimeUnit.NANOSECONDS);
+			} else {
+				emit(group);
+			}
+		}
+	}
+
+	private void emit(PendingGroup group) {
+		group.emitted = true;
+		groups.remove(group.mediaGroupId, group);
+		sink.accept(group.updates);
+	}
+
+	private static String getMediaGroupId(Update update) {
+		Message message = null;
+		if (update.hasMessage()) {
+			message = update.getMessage();
+		} else if (update.hasChannelPost()) {
+			message = update.getChannelPost();
+		}
+		return message == null ? null : message.getMediaGroupId();
+	}
+
+	private static final class PendingGroup {
+		private final String mediaGroupId;
+		private final List<Update> updates = new ArrayList<>(MAX_GROUP_SIZE);
+		private long lastSeen;
+		private boolean emitted;
+		private HashedWheelTimer.Timeout timeout;
+
+		private PendingGroup(String mediaGroupId) {
+			this.mediaGroupId = mediaGroupId;
+		}
+	}
+}
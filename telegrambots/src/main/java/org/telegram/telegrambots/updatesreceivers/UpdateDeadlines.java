@@ -0,0 +1,219 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.updates.AllowedUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * @author agent
+ * @version 1.0 Deadlines of the updates that must be answered quickly.
+ *
+ *          Pre checkout queries must be answered within 10 seconds, callback
+ *          queries show a spinner until they are answered and inline queries
+ *          are only shown for a short time. The session hands these updates
+ *          to the bot before ordinary ones, earliest deadline first.
+ *
+ *          Optionally, a callback query still unanswered some time after it
+ *          was received is answered with an empty AnswerCallbackQuery, so the
+ *          spinner stops. The answer the bot sends later is then not sent,
+ *          unless the automatic one failed. Answers are claimed when they are
+ *          sent, before waiting in the queue of the sender.
+ */
+public class UpdateDeadlines {
+	/**
+	 * Time after which an answered query is forgotten. Telegram doesn't accept
+	 * answers for older queries anyway.
+	 */
+	private static final long RETENTION_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+	private final Map<String, Answer> answers = new ConcurrentHashMap<>();
+	private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+	private final AtomicLong missedDeadlines = new AtomicLong();
+	private final AtomicLong autoAnswers = new AtomicLong();
+	private volatile long autoAnswerMillis;
+
+	/**
+	 * Creates the deadlines by default: 5 seconds for inline queries and 10
+	 * seconds for callback, shipping and pre checkout queries
+	 */
+	public UpdateDeadlines() {
+		deadlines.put(AllowedUpdates.INLINEQUERY, 5000L);
+		deadlines.put(AllowedUpdates.CALLBACKQUERY, 10000L);
+		deadlines.put(AllowedUpdates.SHIPPINGQUERY, 10000L);
+		deadlines.put(AllowedUpdates.PRECHECKOUTQUERY, 10000L);
+	}
+
+	/**
+	 * Sets the deadline of a type of updates
+	 *
+	 * @param updateType     Type of the updates, see {@link AllowedUpdates}
+	 * @param deadlineMillis Time to handle them since they are received, 0 to
+	 *                       handle them as ordinary updates
+	 * @return This object
+	 */
+	public UpdateDeadlines setDeadlineMillis(String updateType, long deadlineMillis) {
+		if (deadlineMillis > 0) {
+			deadlines.put(updateType, deadlineMillis);
+		} else {
+			deadlines.remove(updateType);
+		}
+		return this;
+	}
+
+	/**
+	 * @param update Update received
+	 * @return Time to handle it since it is received, 0 if it has no deadline
+	 */
+	public long getDeadlineMillis(Update update) {
+		String type = getType(update);
+		if (type == null) {
+			return 0;
+		}
+		return deadlines.getOrDefault(type, 0L);
+	}
+
+	public long getAutoAnswerMillis() {
+		return autoAnswerMillis;
+	}
+
+	/**
+	 * Enables answering callback queries the bot didn't answer in time
+	 *
+	 * @param autoAnswerMillis Time since a query is received after which it is
+	 *                         answered, 0 to never answer them (default)
+	 * @return This object
+	 */
+	public UpdateDeadlines setAutoAnswerMillis(long autoAnswerMillis) {
+		this.autoAnswerMillis = autoAnswerMillis;
+		return this;
+	}
+
+	/**
+	 * Claims the answer of a callback query. Only the first answer claimed for
+	 * a query is sent. Answers are not claimed if automatic answers are
+	 * disabled, so the bot can answer again after a failure
+	 *
+	 * @param answerCallbackQuery Answer to send
+	 * @return True if it can be sent, false if another answer was sent
+	 */
+	public boolean claimAnswer(AnswerCallbackQuery answerCallbackQuery) {
+		return autoAnswerMillis <= 0 || claim(answerCallbackQuery);
+	}
+
+	/**
+	 * Releases the claim of an answer that couldn't be sent, so another one can
+	 * be
+	 *
+	 * @param answerCallbackQuery Answer that failed
+	 */
+	public void releaseAnswer(AnswerCallbackQuery answerCallbackQuery) {
+		String callbackQueryId = answerCallbackQuery.getCallbackQueryId();
+		if (callbackQueryId != null) {
+			answers.computeIfPresent(callbackQueryId,
+					(id, answer) -> answer.method == answerCallbackQuery ? null : answer);
+		}
+	}
+
+	private boolean claim(AnswerCallbackQuery answerCallbackQuery) {
+		String callbackQueryId = answerCallbackQuery.getCallbackQueryId();
+		if (callbackQueryId == null) {
+			return true;
+		}
+		long now = System.nanoTime();
+		Answer previous = answers.putIfAbsent(callbackQueryId, new Answer(answerCallbackQuery, now));
+		purge(now);
+		return previous == null || previous.method == answerCallbackQuery;
+	}
+
+	/**
+	 * Number of deadline bound updates handed to the bot after their deadline
+	 */
+	public long getMissedDeadlines() {
+		return missedDeadlines.get();
+	}
+
+	/**
+	 * Number of callback queries answered because the bot didn't in time
+	 */
+	public long getAutoAnswers() {
+		return autoAnswers.get();
+	}
+
+	void missedDeadline() {
+		missedDeadlines.incrementAndGet();
+	}
+
+	void autoAnswered() {
+		autoAnswers.incrementAndGet();
+	}
+
+	/**
+	 * Claims the automatic answer of a callback query
+	 *
+	 * @return Answer to send, null if the bot already answered it
+	 */
+	AnswerCallbackQuery claimAutoAnswer(String callbackQueryId) {
+		AnswerCallbackQuery answerCallbackQuery = new AnswerCallbackQuery().setCallbackQueryId(callbackQueryId);
+		return claim(answerCallbackQuery) ? answerCallbackQuery : null;
+	}
+
+	private void purge(long now) {
+		long last = lastPurge.get();
+		if (now - last < RETENTION_NANOS || !lastPurge.compareAndSet(last, now)) {
+			return;
+		}
+		for (Iterator<Answer> it = answers.values().iterator(); it.hasNext();) {
+			if (now - it.next().claimedAt > RETENTION_NANOS) {
+				it.remove();
+			}
+		}
+	}
+
+	private static String getType(Update update) {
+		if (update.hasCallbackQuery()) {
+			return AllowedUpdates.CALLBACKQUERY;
+		}
+		if (update.hasInlineQuery()) {
+			return AllowedUpdates.INLINEQUERY;
+		}
+		if (update.hasPreCheckoutQuery()) {
+			return AllowedUpdates.PRECHECKOUTQUERY;
+		}
+		if (update.hasShippingQuery()) {
+			return AllowedUpdates.SHIPPINGQUERY;
+		}
+		if (update.hasMessage()) {
+			return AllowedUpdates.MESSAGE;
+		}
+		if (update.hasEditedMessage()) {
+			return AllowedUpdates.EDITEDMESSAGE;
+		}
+		if (update.hasChannelPost()) {
+			return AllowedUpdates.CHANNELPOST;
+		}
+		if (update.hasEditedChannelPost()) {
+			return AllowedUpdates.EDITEDCHANNELPOST;
+		}
+		if (update.hasChosenInlineQuery()) {
+			return AllowedUpdates.CHOSENINLINERESULT;
+		}
+		return null;
+	}
+
+	private static final class Answer {
+		private final AnswerCallbackQuery method;
+		private final long claimedAt;
+
+		private Answer(AnswerCallbackQuery method, long claimedAt) {
+			this.method = method;
+			this.claimedAt = claimedAt;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author agent
+ * @version 1.0 Filter of updates already handled, like the ones returned
+ *          again by getUpdates after a crash or redelivered to a slow
+ *          webhook.
+ *
+ *          It remembers a sliding window of the most recent update ids as a
+ *          bitset, so checking an update costs a couple of word operations.
+ *          An id further back than the window is taken as Telegram restarting
+ *          the sequence, as it does after a week without updates, and starts
+ *          the window again from it. The bitset can
+ *          be kept in a memory mapped file, so it survives a restart of the
+ *          bot.
+ *
+ *          Updates are only remembered once the bot handled them, so an
+ *          update whose handling failed, or was cut short by a crash, is
+ *          handled again if Telegram sends it again.
+ */
+public class UpdateDeduplicator {
+	public static final int DEFAULT_WINDOW = 64 * 1024;
+
+	private static final int MAGIC = 0x54475544;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int WINDOW_OFFSET = 4;
+	private static final int HIGHEST_OFFSET = 8;
+	private static final int BITS_OFFSET = 16;
+
+	private final ByteBuffer state;
+	private final long window;
+	private long duplicates;
+
+	/**
+	 * Creates a filter kept in memory, remembering the last
+	 * {@link #DEFAULT_WINDOW} update ids
+	 */
+	public UpdateDeduplicator() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates a filter kept in memory
+	 *
+	 * @param window Number of recent update ids remembered, rounded up to a
+	 *               power of two
+	 */
+	public UpdateDeduplicator(int window) {
+		this.window = roundWindow(window);
+		this.state = ByteBuffer.allocate(size(this.window));
+		initialize();
+	}
+
+	/**
+	 * Creates a filter kept in a file, or opens it if it exists
+	 *
+	 * @param file   File of the filter
+	 * @param window Number of recent update ids remembered, rounded up to a
+	 *               power of two. Ignored if the file already exists
+	 * @throws IOException If the file can't be opened or is not a filter
+	 */
+	public UpdateDeduplicator(File file, int window) throws IOException {
+		boolean exists = file.exists() && file.length() >= BITS_OFFSET;
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			long fileWindow = roundWindow(window);
+			if (exists) {
+				if (access.readInt() != MAGIC) {
+					throw new IOException(file + " is not an update filter");
+				}
+				fileWindow = access.readInt();
+			}
+			this.window = fileWindow;
+			MappedByteBuffer buffer = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size(fileWindow));
+			this.state = buffer;
+		}
+		if (!exists) {
+			initialize();
+		}
+	}
+
+	/**
+	 * Checks an update, without remembering it
+	 *
+	 * @param updateId Id of the update
+	 * @return True if it was already handled
+	 */
+	public synchronized boolean isHandled(int updateId) {
+		long highest = state.getLong(HIGHEST_OFFSET);
+		if (updateId > highest || isRestarted(highest, updateId) || !isSet(updateId)) {
+			return false;
+		}
+		duplicates++;
+		return true;
+	}
+
+	/**
+	 * Remembers an update once it was handled
+	 *
+	 * @param updateId Id of the update
+	 */
+	public synchronized void handled(int updateId) {
+		long highest = state.getLong(HIGHEST_OFFSET);
+		boolean restarted = isRestarted(highest, updateId);
+		if (updateId > highest || restarted) {
+			if (highest < 0 || restarted || updateId - highest >= window) {
+				clearAll();
+			} else {
+				for (long id = highest + 1; id < updateId; id++) {
+					clearBit(id);
+				}
+			}
+			state.putLong(HIGHEST_OFFSET, updateId);
+		}
+		setBit(updateId);
+	}
+
+	/**
+	 * @return Number of updates rejected
+	 */
+	public synchronized long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * Forces the filter to be written to its file, if it has one
+	 */
+	public synchronized void flush() {
+		if (state instanceof MappedByteBuffer) {
+			((MappedByteBuffer) state).force();
+		}
+	}
+
+	private void initialize() {
+		state.putInt(MAGIC_OFFSET, MAGIC);
+		state.putInt(WINDOW_OFFSET, (int) window);
+		state.putLong(HIGHEST_OFFSET, -1);
+	}
+
+	/**
+	 * Ids far back from the window mean the sequence was restarted
+	 */
+	private boolean isRestarted(long highest, int updateId) {
+		return highest - updateId >= window;
+	}
+
+	private boolean isSet(long id) {
+		return (state.getLong(wordOffset(id)) & (1L << id)) != 0;
+	}
+
+	private void setBit(long id) {
+		int offset = wordOffset(id);
+		state.putLong(offset, state.getLong(offset) | (1L << id));
+	}
+
+	private void clearBit(long id) {
+		int offset = wordOffset(id);
+		state.putLong(offset, state.getLong(offset) & ~(1L << id));
+	}
+
+	private void clearAll() {
+		for (int offset = BITS_OFFSET; offset < state.capacity(); offset += 8) {
+			state.putLong(offset, 0);
+		}
+	}
+
+	private int wordOffset(long id) {
+		// Ids wrap around the window, 1L << id only uses the low 6 bits
+		return BITS_OFFSET + (int) ((id & (window - 1)) >>> 6) * 8;
+	}
+
+	private static long roundWindow(int window) {
+		long rounded = 64;
+		while (rounded < window) {
+			rounded <<= 1;
+		}
+		return rounded;
+	}
+
+	private static int size(long window) {
+		return BITS_OFFSET + (int) (window / 8);
+	}
+}
@@ -0,0 +1,231 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.telegram.telegrambots.journal.UpdateJournal;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * @author agent
+ * @version 1.0 Streaming deserializer of getUpdates responses.
+ *
+ *          Each update is only read up to its type field. Updates whose type
+ *          isn't handled by the bot are skipped token by token without
+ *          building any object, but their update_id is still tracked so the
+ *          offset moves past them.
+ *
+ *          When a projection of message fields is configured, messages are
+ *          copied to a token buffer without the fields that aren't listed, so
+ *          nested objects like reply_to_message, photo sizes or passport data
+ *          are never materialized unless asked for.
+ *
+ *          If a journal is set, the raw bytes of every update are appended to
+ *          it as they are found in the response.
+ */
+class UpdatesDeserializer {
+	private static final String OK_FIELD = "ok";
+	private static final String RESULT_FIELD = "result";
+	private static final String UPDATEID_FIELD = "update_id";
+	/**
+	 * Update fields holding a Message
+	 */
+	private static final Set<String> MESSAGE_UPDATES = new HashSet<>(
+			Arrays.asList("message", "edited_message", "channel_post", "edited_channel_post"));
+	/**
+	 * Message fields always bound, needed to answer in the chat
+	 */
+	private static final Set<String> REQUIRED_MESSAGE_FIELDS = new HashSet<>(
+			Arrays.asList("message_id", "date", "chat"));
+
+	private final ObjectMapper objectMapper;
+	private final Set<String> allowedUpdates;
+	private final Set<String> messageFields;
+	private final UpdateJournal journal;
+
+	/**
+	 * @param objectMapper   Mapper used to bind the updates
+	 * @param allowedUpdates Update types to bind, null or empty to bind all of
+	 *                       them
+	 * @param messageFields  Message fields to bind, null or empty to bind all
+	 *                       of them
+	 * @param journal        Journal of the raw updates, including the skipped
+	 *                       ones, null to not journal them
+	 */
+	UpdatesDeserializer(ObjectMapper objectMapper, Collection<String> allowedUpdates,
+			Collection<String> messageFields, UpdateJournal journal) {
+		this.objectMapper = objectMapper;
+		this.journal = journal;
+		if (allowedUpdates == null || allowedUpdates.isEmpty()) {
+			this.allowedUpdates = null;
+		} else {
+			this.allowedUpdates = new HashSet<>(allowedUpdates);
+		}
+		if (messageFields == null || messageFields.isEmpty()) {
+			this.messageFields = null;
+		} else {
+			this.messageFields = new HashSet<>(messageFields);
+			this.messageFields.addAll(REQUIRED_MESSAGE_FIELDS);
+		}
+	}
+
+	/**
+	 * Deserializes a getUpdates response
+	 *
+	 * @param request Request that got this response, used to report errors
+	 * @param content Raw response
+	 * @return Updates of handled types
+	 * @throws TelegramApiRequestException If the response is an error
+	 * @throws IOException                 If the response is not valid json
+	 */
+	UpdatesPage deserialize(GetUpdates request, byte[] content) throws TelegramApiRequestException, IOException {
+		UpdatesPage page = new UpdatesPage();
+		boolean ok = false;
+		try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Unexpected getUpdates response");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (OK_FIELD.equals(field)) {
+					ok = value == JsonToken.VALUE_TRUE;
+				} else if (RESULT_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+					long receivedAt = System.currentTimeMillis();
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						int start = (int) parser.getTokenLocation().getByteOffset();
+						int updateId = readUpdate(parser, page);
+						if (journal != null) {
+							int end = (int) parser.getCurrentLocation().getByteOffset();
+							journal.append(updateId, receivedAt, content, start, end - start);
+						}
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		if (!ok) {
+			// Let the method build the usual exception with the error details
+			request.deserializeResponse(new String(content, StandardCharsets.UTF_8));
+			throw new TelegramApiRequestException("Error getting updates");
+		}
+		return page;
+	}
+
+	/**
+	 * Reads an update, leaving the parser at its end
+	 *
+	 * @return Id of the update
+	 */
+	private int readUpdate(JsonParser parser, UpdatesPage page) throws IOException {
+		if (allowedUpdates == null && messageFields == null) {
+			Update update = objectMapper.readValue(parser, Update.class);
+			page.add(update.getUpdateId(), update);
+			return update.getUpdateId();
+		}
+
+		int updateId = 0;
+		TokenBuffer buffer = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (UPDATEID_FIELD.equals(field)) {
+				updateId = parser.getIntValue();
+			} else if (allowedUpdates == null || allowedUpdates.contains(field)) {
+				if (buffer == null) {
+					buffer = new TokenBuffer(parser);
+					buffer.writeStartObject();
+				}
+				buffer.writeFieldName(field);
+				if (messageFields != null && value == JsonToken.START_OBJECT && MESSAGE_UPDATES.contains(field)) {
+					copyMessage(parser, buffer);
+				} else {
+					buffer.copyCurrentStructure(parser);
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (buffer == null) {
+			page.add(updateId, null);
+		} else {
+			buffer.writeNumberField(UPDATEID_FIELD, updateId);
+			buffer.writeEndObject();
+			try (JsonParser bufferParser = buffer.asParser(objectMapper)) {
+				page.add(updateId, objectMapper.readValue(bufferParser, Update.class));
+			}
+		}
+		return updateId;
+	}
+
+	private void copyMessage(JsonParser parser, TokenBuffer buffer) throws IOException {
+		buffer.writeStartObject();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (messageFields.contains(field)) {
+				buffer.writeFieldName(field);
+				buffer.copyCurrentStructure(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		buffer.writeEndObject();
+	}
+
+	/**
+	 * Result of a getUpdates call
+	 */
+	static final class UpdatesPage {
+		private final List<Update> updates = new ArrayList<>();
+		private int lastUpdateId;
+		private int skipped;
+
+		private void add(Integer updateId, Update update) {
+			if (updateId != null && updateId > lastUpdateId) {
+				lastUpdateId = updateId;
+			}
+			if (update == null) {
+				skipped++;
+			} else {
+				updates.add(update);
+			}
+		}
+
+		/**
+		 * Updates of handled types
+		 */
+		List<Update> getUpdates() {
+			return updates;
+		}
+
+		/**
+		 * Highest update_id received, including skipped updates
+		 */
+		int getLastUpdateId() {
+			return lastUpdateId;
+		}
+
+		/**
+		 * Number of updates skipped because of their type
+		 */
+		int getSkipped() {
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.telegram.telegrambots.inline;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @version 1.0 Benchmark of {@link InlineSearchIndex} over a million documents,
+ *          run by hand with its main method (it is not a unit test).
+ *
+ *          Documents are titles of two to six words taken from a vocabulary of
+ *          random words, weighted at random. It reports the time to index them,
+ *          the heap used and the average time of queries with a short word, a
+ *          long word, two words of a title, a word missing from the catalog and
+ *          no words.
+ */
+public class InlineSearchIndexBenchmark {
+	private static final int DOCUMENTS = 1000000;
+	private static final int VOCABULARY = 50000;
+	private static final int QUERIES = 2000;
+	private static final int LIMIT = 50;
+	private static final int SAMPLE_EVERY = 1000;
+
+	public static void main(String[] args) {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : DOCUMENTS;
+		Random random = new Random(42);
+		String[] vocabulary = new String[VOCABULARY];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = randomWord(random);
+		}
+
+		InlineSearchIndex<String> index = new InlineSearchIndex<>();
+		String[][] sample = new String[(documents + SAMPLE_EVERY - 1) / SAMPLE_EVERY][];
+		long start = System.nanoTime();
+		for (int i = 0; i < documents; i++) {
+			String[] words = new String[2 + random.nextInt(5)];
+			for (int w = 0; w < words.length; w++) {
+				words[w] = vocabulary[random.nextInt(vocabulary.length)];
+			}
+			if (i % SAMPLE_EVERY == 0) {
+				sample[i / SAMPLE_EVERY] = words;
+			}
+			String id = Integer.toString(i);
+			index.put(id, String.join(" ", words), random.nextDouble(), id);
+		}
+		System.out.println("Indexed " + index.size() + " documents in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + "MB");
+
+		run(index, "Short word", () -> vocabulary[random.nextInt(vocabulary.length)].substring(0, 2));
+		run(index, "Long word", () -> vocabulary[random.nextInt(vocabulary.length)]);
+		run(index, "Two words of a title", () -> {
+			String[] words = sample[random.nextInt(sample.length)];
+			return words[0] + " " + words[1].substring(0, 3);
+		});
+		run(index, "Missing word", () -> randomWord(random) + "zz");
+		run(index, "Empty query", () -> "");
+	}
+
+	private static void run(InlineSearchIndex<String> index, String name, QuerySupplier queries) {
+		// Warm up
+		for (int i = 0; i < QUERIES; i++) {
+			index.search(queries.next(), LIMIT);
+		}
+		long results = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			List<String> found = index.search(queries.next(), LIMIT);
+			results += found.size();
+		}
+		long nanos = (System.nanoTime() - start) / QUERIES;
+		System.out.println(name + ": " + TimeUnit.NANOSECONDS.toMicros(nanos) + "us per query, "
+				+ results / QUERIES + " results");
+	}
+
+	private static String randomWord(Random random) {
+		char[] word = new char[4 + random.nextInt(6)];
+		for (int i = 0; i < word.length; i++) {
+			word[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(word);
+	}
+
+	private interface QuerySupplier {
+		String next();
+	}
+}
@@ -0,0 +1,161 @@
+package org.telegram.telegrambots.updatesreceivers;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * @author agent
+ * @version 1.0 Benchmark of {@link UpdatesDeserializer} binding whole
+ *          messages against binding a projection of them, run by hand with
+ *          its main method (it is not a unit test).
+ *
+ *          Pages are getUpdates responses of 100 group chat messages shaped
+ *          like the sample update of the meta tests: text with entities, and
+ *          some replies carrying the message they answer, forwards and photos
+ *          with their sizes. The handler reads the text, the chat and the
+ *          sender, which is all the projection binds. It reports the best time
+ *          of a few runs and the bytes allocated per update.
+ */
+public class UpdatesDeserializerBenchmark {
+	private static final int PAGES = 100;
+	private static final int UPDATES_PER_PAGE = 100;
+	private static final int ROUNDS = 50;
+	private static final int RUNS = 5;
+	private static final List<String> PROJECTION = Arrays.asList("text", "from");
+
+	private static long checksum;
+
+	public static void main(String[] args) throws IOException, TelegramApiRequestException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		Random random = new Random(42);
+		byte[][] pages = new byte[PAGES][];
+		int updateId = 10000;
+		long bytes = 0;
+		for (int p = 0; p < pages.length; p++) {
+			ObjectNode page = objectMapper.createObjectNode();
+			page.put("ok", true);
+			ArrayNode result = page.putArray("result");
+			for (int u = 0; u < UPDATES_PER_PAGE; u++) {
+				ObjectNode update = result.addObject();
+				update.put("update_id", updateId++);
+				update.set("message", groupMessage(objectMapper, random, updateId, true));
+			}
+			pages[p] = objectMapper.writeValueAsBytes(page);
+			bytes += pages[p].length;
+		}
+		System.out.println("Pages of " + UPDATES_PER_PAGE + " updates, " + bytes / PAGES / 1024 + "KB each");
+
+		run("Full binding", pages, new UpdatesDeserializer(objectMapper, null, null, null));
+		run("Projection", pages, new UpdatesDeserializer(objectMapper, null, PROJECTION, null));
+	}
+
+	private static void run(String name, byte[][] pages, UpdatesDeserializer deserializer)
+			throws IOException, TelegramApiRequestException {
+		GetUpdates request = new GetUpdates();
+		// Warm up
+		for (int round = 0; round < ROUNDS; round++) {
+			for (byte[] page : pages) {
+				handle(deserializer.deserialize(request, page).getUpdates());
+			}
+		}
+		// Best of a few runs, as the time of a single one varies with the GC
+		long nanos = Long.MAX_VALUE;
+		long bytes = 0;
+		for (int run = 0; run < RUNS; run++) {
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++) {
+				for (byte[] page : pages) {
+					handle(deserializer.deserialize(request, page).getUpdates());
+				}
+			}
+			nanos = Math.min(nanos, System.nanoTime() - start);
+			bytes = allocatedBytes() - allocated;
+		}
+		long updates = (long) ROUNDS * pages.length * UPDATES_PER_PAGE;
+		System.out.println(name + ": " + TimeUnit.NANOSECONDS.toMicros(nanos / (ROUNDS * pages.length))
+				+ "us per page, " + nanos / updates + "ns and " + bytes / updates + " bytes per update");
+	}
+
+	/**
+	 * What a typical handler reads
+	 */
+	private static void handle(List<Update> updates) {
+		for (Update update : updates) {
+			Message message = update.getMessage();
+			checksum += message.getChatId() + message.getFrom().getId()
+					+ (message.hasText() ? message.getText().length() : 0);
+		}
+	}
+
+	private static ObjectNode groupMessage(ObjectMapper objectMapper, Random random, int messageId,
+			boolean nested) {
+		ObjectNode message = objectMapper.createObjectNode();
+		message.put("message_id", messageId);
+		message.put("date", 1441645532 + messageId);
+		ObjectNode chat = message.putObject("chat");
+		chat.put("id", -1001234567890L);
+		chat.put("type", "supergroup");
+		chat.put("title", "Test group");
+		chat.put("username", "testgroup");
+		int userId = 1111111 + random.nextInt(200);
+		ObjectNode from = message.putObject("from");
+		from.put("id", userId);
+		from.put("is_bot", false);
+		from.put("first_name", "Test Firstname " + userId);
+		from.put("last_name", "Test Lastname");
+		from.put("username", "Testusername" + userId);
+		from.put("language_code", "en");
+
+		int kind = random.nextInt(10);
+		if (nested && kind < 3) {
+			message.set("reply_to_message",
+					groupMessage(objectMapper, random, messageId - 1 - random.nextInt(50), false));
+		} else if (nested && kind == 3) {
+			ObjectNode forwardFrom = message.putObject("forward_from");
+			forwardFrom.put("id", 222222);
+			forwardFrom.put("is_bot", false);
+			forwardFrom.put("first_name", "ForwardFirstname");
+			forwardFrom.put("last_name", "ForwardLastname");
+			message.put("forward_date", 1441645550);
+		}
+		if (kind >= 8) {
+			ArrayNode photo = message.putArray("photo");
+			for (int size : new int[] { 90, 320, 800, 1280 }) {
+				ObjectNode photoSize = photo.addObject();
+				photoSize.put("file_id", "AgADBAADbXXXXXXXXXXXGBdhD2l6_XX" + size);
+				photoSize.put("width", size);
+				photoSize.put("height", size * 3 / 4);
+				photoSize.put("file_size", size * size / 8);
+			}
+			message.put("caption", "Photo of the day");
+		} else {
+			String text = "Bold and italics, with a link to https://core.telegram.org/bots/api and #tag";
+			message.put("text", text);
+			ArrayNode entities = message.putArray("entities");
+			entities.addObject().put("type", "bold").put("offset", 0).put("length", 4);
+			entities.addObject().put("type", "italic").put("offset", 9).put("length", 7);
+			entities.addObject().put("type", "url").put("offset", text.indexOf("https")).put("length", 35);
+			entities.addObject().put("type", "hashtag").put("offset", text.indexOf('#')).put("length", 4);
+		}
+		return message;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}